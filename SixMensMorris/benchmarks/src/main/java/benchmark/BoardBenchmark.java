@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.Board;
+import model.BoardError;
+import model.BoardLayout;
+import model.MoveGenerator;
+
+/**
+ * Benchmarks for adding, looking up and validating pieces on a model.Board
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	// A full placement phase without any three-in-a-row
+	private static final int[] RED_NODES = {0, 2, 5, 9, 11, 14};
+	private static final int[] BLUE_NODES = {1, 4, 7, 8, 12, 15};
+
+	private Board board;
+	private int[][] coordinates;
+	private final BoardError result = new BoardError();
+	private int move;
+
+	@Setup
+	public void setup(){
+		board = fill(new Board(Board.RED));
+		coordinates = new int[16][];
+		for (int node = 0; node < 16; node++) coordinates[node] = BoardLayout.getNodePosition(node).clone();
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int position = board.getPosition();
+		MoveGenerator.generate(Board.getRed(position), Board.getBlue(position), 0, moves);
+		move = moves[0];
+	}
+
+	private static Board fill(Board board){
+		for (int i = 0; i < RED_NODES.length; i++){
+			board.addPiece(Board.RED, BoardLayout.getNodePosition(RED_NODES[i]));
+			board.addPiece(Board.BLUE, BoardLayout.getNodePosition(BLUE_NODES[i]));
+		}
+		return board;
+	}
+
+	/**
+	 * Twelve placements on a fresh board
+	 */
+	@Benchmark
+	public Board addPiece(){
+		return fill(new Board(Board.RED));
+	}
+
+	/**
+	 * One lookup of every node, as done when the board is drawn
+	 */
+	@Benchmark
+	public void getPiece(Blackhole blackhole){
+		for (int node = 0; node < 16; node++) blackhole.consume(board.getPiece(coordinates[node]));
+	}
+
+	@Benchmark
+	public BoardError validSetup(){
+		return board.validSetup();
+	}
+
+	/**
+	 * Validation into a reused result, as done when checking many positions
+	 */
+	@Benchmark
+	public BoardError validSetupReused(){
+		return board.validSetup(result);
+	}
+
+	/**
+	 * One move played and taken back on the move stack, as when walking a game tree
+	 */
+	@Benchmark
+	public long makeUnmake(){
+		board.makeMove(move);
+		long key = board.getKey();
+		board.unmakeMove();
+		return key;
+	}
+
+	/**
+	 * The same move played on a copy of the board, for comparison with makeUnmake
+	 */
+	@Benchmark
+	public long copyMake(){
+		Board copy = new Board(board);
+		copy.makeMove(move);
+		return copy.getKey();
+	}
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.BoardLayout;
+
+/**
+ * Benchmarks for the model.BoardLayout queries made on every click and move
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+	private final Point click = new Point(BoardLayout.getNodeX(5) + 7, BoardLayout.getNodeY(5) - 3);
+
+	/**
+	 * Every pair of nodes checked for a connection
+	 */
+	@Benchmark
+	public void isConnected(Blackhole blackhole){
+		for (int first = 0; first < 16; first++){
+			for (int second = 0; second < 16; second++) blackhole.consume(BoardLayout.isConnected(first, second));
+		}
+	}
+
+	/**
+	 * Distance from a click to every node, as done to find the clicked node
+	 */
+	@Benchmark
+	public void distanceTo(Blackhole blackhole){
+		for (int node = 0; node < 16; node++) blackhole.consume(BoardLayout.distanceTo(node, click));
+	}
+
+	/**
+	 * Finding the clicked node through the hit-test grid
+	 */
+	@Benchmark
+	public int nodeAt(){
+		return BoardLayout.nodeAt(click);
+	}
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Board;
+import model.MoveGenerator;
+
+/**
+ * Benchmark for complete random games played through model.Board and model.MoveGenerator
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+
+	private static final int MAX_PLIES = 200;	// Games still going after this many moves count as draws
+
+	private final Random random = new Random(42);
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+	/**
+	 * One game from the empty board until a side is blocked, is left with two pieces or MAX_PLIES is reached
+	 * @return number of plies played
+	 */
+	@Benchmark
+	public int playout(){
+		Board board = new Board(random.nextBoolean());
+		for (int ply = 0; ply < MAX_PLIES; ply++){
+			boolean turn = board.getTurn();
+			int position = board.getPosition();
+			int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+			if (Integer.bitCount(own) + board.getInHand(turn) < 3) return ply;
+
+			int count = MoveGenerator.generate(board, moves);
+			if (count == 0) return ply;
+			board.makeMove(moves[random.nextInt(count)]);
+		}
+		return MAX_PLIES;
+	}
+}
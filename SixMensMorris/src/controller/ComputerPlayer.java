@@ -0,0 +1,132 @@
+package controller;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.IntConsumer;
+
+import javax.swing.SwingUtilities;
+
+import model.Board;
+import model.Move;
+
+/**
+ * The class ComputerPlayer works out the computer's moves away from the Swing event thread,
+ * so that the window keeps painting and reacting while the engine thinks.
+ * <br>
+ * Requests run one at a time on a dedicated thread, which searches together with helper
+ * threads on all but one of the cores, leaving that one for the user interface. The chosen
+ * move is handed back on the event thread through SwingUtilities.invokeLater. Every request
+ * and cancel starts a new generation; work belonging to an older generation is dropped, so
+ * a move from an abandoned game is never played.
+ * <br>
+ * While the user thinks, the computer ponders: it keeps searching the position in short
+ * slices, which fills the shared transposition table with the lines it will need next.
+ *
+ */
+class ComputerPlayer {
+
+	private static final long PONDER_SLICE = 100;	// Milliseconds per ponder search; also the longest wait to stop pondering
+	private static final long PONDER_LIMIT = 60000;	// Longest time to ponder one position
+
+	private final engine.ParallelSearch search;
+	private final ExecutorService worker;
+	private engine.OpeningBook book;
+	private final int[] bookMoves = new int[model.MoveGenerator.MAX_MOVES];	// Only used on the worker thread
+	private volatile int generation;	// Bumped by every request and cancel
+
+	/**
+	 * @param tableSizeLog2 log2 of the number of transposition table entries
+	 */
+	ComputerPlayer(int tableSizeLog2){
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		search = new engine.ParallelSearch(threads, new engine.TranspositionTable(tableSizeLog2));
+		worker = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "computer-player");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @param tablebase endgame table for the search, or null
+	 */
+	void setTablebase(engine.Tablebase tablebase){
+		search.setTablebase(tablebase);
+	}
+
+	/**
+	 * @param evaluation weights to score searched positions with
+	 */
+	void setEvaluation(engine.Evaluation evaluation){
+		search.setEvaluation(evaluation);
+	}
+
+	/**
+	 * @param book placement-phase moves to play without searching, or null
+	 */
+	void setBook(engine.OpeningBook book){
+		this.book = book;
+	}
+
+	/**
+	 * Starts working out a move, stopping any pondering first
+	 * @param board position to move from; a copy is searched, so the caller may go on using it
+	 * @param millis time budget in milliseconds
+	 * @param listener called on the event thread with the move, or Move.NONE if there is no legal move, unless cancelled first
+	 */
+	void requestMove(Board board, final long millis, final IntConsumer listener){
+		final int id = restart();
+		final Board copy = new Board(board);
+		worker.execute(new Runnable(){
+			@Override
+			public void run() {
+				if (id != generation) return;
+				int move = book == null ? Move.NONE : book.probe(copy, bookMoves);
+				if (move == Move.NONE) move = search.findBestMove(copy, millis, Long.MAX_VALUE);
+				final int result = move;	// Move.NONE when blocked in, which the listener must hear of too
+				SwingUtilities.invokeLater(new Runnable(){
+					@Override
+					public void run() {
+						if (id == generation) listener.accept(result);	// Dropped if cancelled in the meantime
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Thinks about the position while the user decides on a move, until the next request or cancel
+	 * @param board position the user is to move in; a copy is searched
+	 */
+	void ponder(Board board){
+		final int id = restart();
+		final Board copy = new Board(board);
+		worker.execute(new Runnable(){
+			@Override
+			public void run() {
+				long start = System.nanoTime();
+				while (id == generation && System.nanoTime() - start < PONDER_LIMIT * 1000000L) {
+					search.findBestMove(copy, PONDER_SLICE, Long.MAX_VALUE);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Abandons any move being worked out and stops pondering, e.g. when a new game starts
+	 */
+	void cancel(){
+		restart();
+	}
+
+	// Starts a new generation and stops the running search so that the worker moves on quickly
+	private int restart(){
+		int id = ++generation;	// Only the event thread changes the generation
+		search.stop();
+		return id;
+	}
+}
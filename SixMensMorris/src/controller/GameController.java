@@ -1,13 +1,14 @@
 package controller;
 
 import java.awt.Color;
-import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.IntConsumer;
 
 import javax.swing.JFrame;
-
-import model.Board;
+import javax.swing.JOptionPane;
 
 /**
  * The GameController class is responsible for reacting to user input
@@ -17,25 +18,100 @@ import model.Board;
  * receive user input from mouse actions
  *
  */
-public class GameController implements MouseListener {	
+public class GameController implements MouseListener, view.CommandQueue.Handler {	
+	
+	private JFrame gameWindow;
+	private JFrame controlPanel;
+	private model.Board board;
+	private view.GameInterface GM;
+	private view.UserInterface UI;
+	
+	private boolean repaint = false;	// True once a command has changed the board, until the batch of commands is done
+	
+	private int startPos = -1;
+	private boolean capturing = false;	// True while the side that just moved must remove an opponent piece after a three-in-a-row
+	private int pendingMove;	// While capturing, the move that made the three-in-a-row, to be completed with its capture
 	
-	private static JFrame gameWindow;
-	private static JFrame controlPanel;
-	private static model.Board board;
-	private static view.GameInterface GM;
-	private static view.UserInterface UI;
+	private static final String TABLEBASE = "resources/tablebase.bin";
+	private static final String BOOK = "resources/book.bin";
+	private static final String EVALUATION = "resources/evaluation.properties";
+	private static final String RECORDS = "resources/games.smr";	// Every game played is added to this file, see model.GameRecord
+	private static final int COMPUTER_PLAYER = 254;	// Player code of the computer in game records, clear of the self-play policy codes
+	private static final long COMPUTER_MILLIS = 500;	// Time the computer may think about each move
+	private final ComputerPlayer computer = new ComputerPlayer(20);	// Thinks on its own threads, see ComputerPlayer
+	private Boolean computerColor = null;	// Colour played by the computer, null when two people are playing
+	private boolean thinking = false;	// True while the computer is working out its move
+	private boolean gameOver = false;	// True once the computer's side has lost, until a move is taken back or a new game starts
+	private boolean computerPlayedRed = false;	// True once the computer has moved for that side in the current game
+	private boolean computerPlayedBlue = false;
 	
-	private static int startPos = -1;
+	private model.GameRecordWriter recorder;	// Opened when the first game is saved
+	private final model.GameRecord record = new model.GameRecord();
+	private final int[] moves = new int[model.MoveGenerator.MAX_MOVES];	// Scratch for hasLost(), which may also run from the save-game hook
 	
 	/**
 	 * Instantiates the GameInterface and UserInterface thus starting the game
 	 */
 	public GameController(){		
 		
+		loadTablebase();
+		loadBook();
+		loadEvaluation();
 		initGameManager();
-		initUserInterface();						
+		initUserInterface();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable(){
+			@Override
+			public void run() {
+				closeRecords();	// The windows exit from the event thread, which waits here, so the board no longer changes
+			}
+		}, "save-game"));
 	}	
 	
+	/**
+	 * Hands the endgame tablebase to the computer player if one has been generated
+	 * @see engine.TablebaseGenerator
+	 */
+	private void loadTablebase(){
+		File file = new File(TABLEBASE);
+		if (!file.exists()) return;
+		try {
+			computer.setTablebase(engine.Tablebase.open(file));
+		} catch (IOException e) {
+			System.out.println("Error: could not load endgame tablebase");	// The computer can still play by searching
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Loads the opening book for the computer player if one has been built
+	 * @see engine.OpeningBookBuilder
+	 */
+	private void loadBook(){
+		File file = new File(BOOK);
+		if (!file.exists()) return;
+		try {
+			computer.setBook(engine.OpeningBook.open(file));
+		} catch (IOException e) {
+			System.out.println("Error: could not load opening book");	// The computer can still play by searching
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Hands the computer player the evaluation weights from the weights file, if there is one
+	 * @see engine.Evaluation
+	 */
+	private void loadEvaluation(){
+		File file = new File(EVALUATION);
+		if (!file.exists()) return;
+		try {
+			computer.setEvaluation(engine.Evaluation.load(file));
+		} catch (IOException e) {
+			System.out.println("Error: could not load evaluation weights");	// The computer keeps the default weights
+			e.printStackTrace();
+		}
+	}
+	
 	/**
 	 * Instantiates the GameInterface
 	 * @see view.GameInterface
@@ -60,35 +136,44 @@ public class GameController implements MouseListener {
 		int xpos = (int)gameWindow.getLocation().getX() + gameWindow.getWidth();
 		int ypos = (int)gameWindow.getLocation().getY() + gameWindow.getHeight()/2 - 50;
 				
-		UI = new view.UserInterface();
+		UI = new view.UserInterface(new view.CommandQueue(this));
 		controlPanel = new JFrame();
-		controlPanel.setSize(300, 110);		
+		controlPanel.setSize(300, 140);		
 		controlPanel.setLocation(xpos, ypos);
 		controlPanel.add(UI);
-		controlPanel.addMouseListener(this);
 		controlPanel.getContentPane().setBackground(Color.LIGHT_GRAY);
 		controlPanel.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		controlPanel.setVisible(true);	
 		startGame();
+		commandsDone();
 	}
 	
 	/**
 	 * Creates a new game and updates the GameInterface
 	 */
 	private void startGame(){
-		board = new model.Board();
-		UI.setState(view.UserInterface.Status.PLAY_GAME);
-		GM.update();		
+		if (board == null) {
+			board = new model.Board();
+			GM.setBoard(board);
+		}
+		repaint = true;
 	}
 	
 	/**
 	 * Resets the state of the game (including the current board setup)
 	 */
 	private void resetGame(){
-		model.Board.resetBoard();
+		computer.cancel();	// A move still being worked out belongs to the old game
+		thinking = false;
+		saveGame();
+		gameOver = false;
+		computerPlayedRed = false;
+		computerPlayedBlue = false;
 		board = new model.Board();
-		UI.setState(view.UserInterface.Status.CONTINUE);
-		GM.update();	
+		GM.setBoard(board);
+		startPos = -1;
+		capturing = false;
+		repaint = true;
 	}
 	
 	/**
@@ -96,8 +181,18 @@ public class GameController implements MouseListener {
 	 */
 	private void analyzeGame(){
 		board.validSetup();
-		UI.setState(view.UserInterface.Status.CONTINUE);
-		GM.update();
+		repaint = true;
+	}
+	
+	/**
+	 * Hands the turn to the other side, letting the computer move if that side is its own
+	 */
+	private void switchColor(){
+		if (capturing) return;	// The move must first be completed with its capture
+		computer.cancel();	// Any move being worked out was for the other side
+		thinking = false;
+		board.switchTurn();
+		playComputerMove();
 	}
 	
 	/**
@@ -106,14 +201,10 @@ public class GameController implements MouseListener {
 	 * @return position of selected piece, in terms of the node it is placed on
 	 */
 	private int getStartPosition(MouseEvent e){
-		Point click = new Point(e.getX(), e.getY());
-		for (int x = 0; x < 16; x++){
-			if (model.BoardLayout.distanceTo(x, click) < 40){
-				int[] position = model.BoardLayout.getNodePosition(x);
-				model.Piece current = Board.getPiece(position);
-				if (current != null && current.getColor() == Board.getTurn()) return x;				
-			}
-		}
+		int x = model.BoardLayout.nodeAt(e.getPoint());
+		if (x == -1) return -1;
+		model.Piece current = board.getPiece(x);
+		if (current != null && current.getColor() == board.getTurn()) return x;
 		return -1;
 	}
 	
@@ -128,21 +219,209 @@ public class GameController implements MouseListener {
 			return;
 		}
 		
-		Point click = new Point(e.getX(), e.getY());
-		for (int x = 0; x < 16; x++){
-			if (model.BoardLayout.distanceTo(x, click) < 40){
-				int[] position = model.BoardLayout.getNodePosition(x);
-				model.Piece current = Board.getPiece(position);
-				if (current == null && model.BoardLayout.isConnected(startPos, x)) {
-					model.Piece selected = Board.getPiece(model.BoardLayout.getNodePosition(startPos));
-					selected.setCoordinate(position);
-					startPos = -1;
-					Board.switchTurn();
-					GM.update();					
-					return;				
-				}
+		int x = model.BoardLayout.nodeAt(e.getPoint());
+		if (x != -1 && board.getPiece(x) == null && model.BoardLayout.isConnected(startPos, x)) {
+			int move = model.Move.slide(startPos, x);
+			startPos = -1;
+			playMove(move);
+		}
+	}
+	
+	/**
+	 * Plays the user's placement or slide on the board's move stack. A move that makes a
+	 * three-in-a-row stays on the stack as played so far until the user has chosen the
+	 * piece to remove, when capturePiece(MouseEvent) replaces it with the complete move.
+	 * @param move packed move without its capture (see model.Move)
+	 */
+	private void playMove(int move){
+		board.makeMove(move);
+		GM.update(model.Move.getChangedNodes(move));
+		if (awaitsCapture(move)) {
+			pendingMove = move;
+			capturing = true;
+			return;
+		}
+		playComputerMove();
+	}
+	
+	/**
+	 * Removes the clicked opponent piece after the player who just moved has made a three-in-a-row
+	 * @param e @see java.awt.event.MouseEvent
+	 */
+	private void capturePiece(MouseEvent e){
+		int x = model.BoardLayout.nodeAt(e.getPoint());
+		if (x == -1) return;
+		int opponent = getMask(board.getTurn());	// The turn has already passed with the move awaiting its capture
+		if ((model.MoveGenerator.getCapturable(opponent) & (1 << x)) == 0) return;
+		board.unmakeMove();
+		board.makeMove(model.Move.withCapture(pendingMove, x));
+		capturing = false;
+		GM.update(1 << x);
+		playComputerMove();
+	}
+	
+	/**
+	 * @param move packed move just played on the board
+	 * @return true if the move made a three-in-a-row but has no capture yet, while the opponent has pieces to remove
+	 */
+	private boolean awaitsCapture(int move){
+		if (model.Move.getCapture(move) != model.Move.NONE || getMask(board.getTurn()) == 0) return false;
+		return model.BoardLayout.formsMill(getMask(!board.getTurn()), model.Move.getTo(move));
+	}
+	
+	/**
+	 * Takes back the last move, or the move still waiting for its capture. When playing the
+	 * computer, its replies are taken back too, so that it is the user's turn again.
+	 */
+	private void undoMove(){
+		computer.cancel();	// Any move being worked out was for the position being taken back
+		thinking = false;
+		startPos = -1;
+		capturing = false;
+		if (board.unmakeMove() == model.Move.NONE) return;
+		gameOver = false;
+		while (computerColor != null && board.getTurn() == computerColor && board.getPly() > 0) board.unmakeMove();
+		repaint = true;
+		playComputerMove();	// Only moves if the game was taken back to the computer's first move
+	}
+	
+	/**
+	 * Plays again the last move taken back, together with the computer's reply when playing it
+	 */
+	private void redoMove(){
+		if (capturing) return;	// The move must first be completed with its capture
+		computer.cancel();
+		thinking = false;
+		startPos = -1;
+		int move;
+		do {
+			move = board.redoMove();
+			if (move == model.Move.NONE) break;
+			repaint = true;
+			if (awaitsCapture(move)) {	// Taken back before its capture was chosen
+				pendingMove = move;
+				capturing = true;
+				return;
+			}
+		} while (computerColor != null && board.getTurn() == computerColor);
+		playComputerMove();
+	}
+	
+	/**
+	 * Lets the computer work out its move if it is playing the side whose turn it is;
+	 * the move is played by playComputerMove(int) once it is ready
+	 */
+	private void playComputerMove(){
+		if (computerColor == null || board.getTurn() != computerColor || capturing || thinking || gameOver) return;
+		if (hasLost()) {
+			endGame();
+			return;
+		}
+		thinking = true;
+		computer.requestMove(board, COMPUTER_MILLIS, new IntConsumer(){
+			@Override
+			public void accept(int move) {
+				playComputerMove(move);
 			}
+		});
+	}
+	
+	/**
+	 * Plays the move the computer has worked out, then lets it ponder on the user's time
+	 * @param move packed move (see model.Move), or Move.NONE if the computer is blocked in; called on the event thread
+	 */
+	private void playComputerMove(int move){
+		thinking = false;
+		if (computerColor == null || board.getTurn() != computerColor || capturing) return;
+		if (move == model.Move.NONE) {
+			endGame();
+			return;
 		}
+		board.makeMove(move);
+		if (computerColor == model.Board.RED) computerPlayedRed = true;
+		else computerPlayedBlue = true;
+		GM.update(model.Move.getChangedNodes(move));
+		computer.ponder(board);
+	}
+	
+	/**
+	 * Stops play after the side to move, which the computer plays, has lost, and says who won
+	 */
+	private void endGame(){
+		gameOver = true;
+		String winner = board.getTurn() == model.Board.RED ? "Blue" : "Red";
+		JOptionPane.showMessageDialog(gameWindow, winner + " wins", "Game over", JOptionPane.INFORMATION_MESSAGE);
+	}
+	
+	/**
+	 * Hands the computer the next colour in turn: none, red, blue, then none again
+	 */
+	private void switchComputer(){
+		if (computerColor == null) computerColor = model.Board.RED;
+		else if (computerColor == model.Board.RED) computerColor = model.Board.BLUE;
+		else computerColor = null;
+		computer.cancel();	// Any move being worked out was for the old colour
+		thinking = false;
+		UI.setComputerColor(computerColor);
+		playComputerMove();
+	}
+	
+	/**
+	 * Adds the moves played so far to the game record file, finished or not. Moves taken back
+	 * are left out, as is a move still waiting for its capture. Games in which the turn was
+	 * switched by hand after the first move do not follow the rules and are not saved.
+	 */
+	private synchronized void saveGame(){
+		int plies = board.getPly() - (capturing ? 1 : 0);
+		if (plies == 0) return;
+		for (int i = 1; i < plies; i++) if (board.getMover(i) == board.getMover(i - 1)) return;
+		
+		record.clear(computerPlayedRed ? COMPUTER_PLAYER : model.GameRecord.HUMAN,
+				computerPlayedBlue ? COMPUTER_PLAYER : model.GameRecord.HUMAN, board.getMover(0), 0);
+		for (int i = 0; i < plies; i++) record.add(board.getMove(i));
+		if (!capturing && hasLost()) record.setResult(board.getTurn() == model.Board.RED ? model.GameRecord.BLUE_WIN : model.GameRecord.RED_WIN);
+		try {
+			if (recorder == null) recorder = new model.GameRecordWriter(new File(RECORDS));
+			recorder.write(record);
+			recorder.flush();	// The game is safe even if the program is killed
+		} catch (IOException e) {
+			System.out.println("Error: could not save game");
+			e.printStackTrace();
+		} catch (IllegalArgumentException e) {
+			System.out.println("Error: game could not be stored: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Saves the game in progress and closes the game record file, when the program exits
+	 */
+	private synchronized void closeRecords(){
+		if (board != null) saveGame();
+		if (recorder == null) return;
+		try {
+			recorder.close();
+		} catch (IOException e) {
+			System.out.println("Error: could not close game record file");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return true if the side to move has fewer than three pieces left or no legal move
+	 */
+	private synchronized boolean hasLost(){
+		boolean turn = board.getTurn();
+		if (Integer.bitCount(getMask(turn)) + board.getInHand(turn) < 3) return true;
+		return model.MoveGenerator.generate(board, moves) == 0;
+	}
+	
+	/**
+	 * @param color side to look up
+	 * @return occupancy mask of that side's pieces
+	 */
+	private int getMask(boolean color){
+		int position = board.getPosition();
+		return color == model.Board.RED ? model.Board.getRed(position) : model.Board.getBlue(position);
 	}
 	
 	/* (non-Javadoc)
@@ -151,56 +430,65 @@ public class GameController implements MouseListener {
 	 */
 	@Override
 	public void mouseClicked(MouseEvent e) {
-								
-		if (Board.getNumPieces() == 12) {
+		
+		if (gameOver) return;
+		if (capturing) {
+			capturePiece(e);
+			return;
+		}
+		if (computerColor != null && board.getTurn() == computerColor) return;	// Wait for the computer to move
+		if (board.getInHand(board.getTurn()) == 0) {
 			makeMove(e);
 			return;
 		}
-		Point click = new Point(e.getX(), e.getY());				
-		
-		for (int x = 0; x < 16; x++){
-			if (model.BoardLayout.distanceTo(x, click) < 40){
-				int[] position = model.BoardLayout.getNodePosition(x);
-				if (Board.getPiece(position) != null) return;
-				board.addPiece(model.Board.getTurn(), position);
-				UI.setState(view.UserInterface.Status.PLAY_GAME);
-				GM.update();
-			}
-		}	
-		model.Board.switchTurn();
+		int x = model.BoardLayout.nodeAt(e.getPoint());
+		if (x == -1 || board.getPiece(x) != null) return;
+		playMove(model.Move.place(x));
+	}
+
+	/* (non-Javadoc)
+	 * Carries out a command from the UserInterface; each is received exactly once
+	 * @see view.CommandQueue.Handler#handle(view.UserInterface.Command)
+	 */
+	@Override
+	public void handle(view.UserInterface.Command command) {
+		switch (command){
+		case NEW_GAME: resetGame(); break;
+		case PLACE_PIECE: startGame(); break;
+		case CHECK_POSITION: analyzeGame(); break;
+		case SWITCH_COLOR: switchColor(); break;
+		case COMPUTER: switchComputer(); break;
+		case UNDO: undoMove(); break;
+		case REDO: redoMove(); break;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * Redraws the board once for a whole batch of commands
+	 * @see view.CommandQueue.Handler#commandsDone()
+	 */
+	@Override
+	public void commandsDone() {
+		if (!repaint) return;
+		repaint = false;
+		GM.update();
 	}
 
 	/* (non-Javadoc)
-	 * Receives mouse entering component as input and calls appropriate methods based on input properties
+	 * Hovering over the windows does nothing
 	 * @see java.awt.event.MouseListener#mouseEntered(java.awt.event.MouseEvent)
 	 */
 	@Override
-	public void mouseEntered(MouseEvent e) {		
-		if (e.getSource() == controlPanel) {
-			e.consume();
-			return;
-		}		
-		if (UI.getState() == view.UserInterface.Status.NEW_GAME) resetGame();
-		else if (UI.getState() == view.UserInterface.Status.PLACE_PIECE) startGame();
-		else if (UI.getState() == view.UserInterface.Status.CHECK_POSITION) analyzeGame();
-		else if (UI.getState() == view.UserInterface.Status.SWITCH_COLOR) Board.switchTurn();
-		else e.consume();
+	public void mouseEntered(MouseEvent e) {
+		e.consume();
 	}
 
 	/* (non-Javadoc)
-	 * Receives mouse exiting component as input and calls appropriate methods based on input properties
 	 * @see java.awt.event.MouseListener#mouseExited(java.awt.event.MouseEvent)
 	 */
 	@Override
 	public void mouseExited(MouseEvent e) {
-		if (e.getSource() == gameWindow) {
-			e.consume();
-			return;
-		}		
-		if (UI.getState() == view.UserInterface.Status.NEW_GAME) resetGame();
-		else if (UI.getState() == view.UserInterface.Status.PLACE_PIECE) startGame();			
-		else if (UI.getState() == view.UserInterface.Status.CHECK_POSITION) analyzeGame();		
-		else e.consume();
+		e.consume();
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,108 @@
+package engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import model.Features;
+
+/**
+ * The class Evaluation scores positions from their occupancy masks as a weighted sum of
+ * features, each taken as the side to move's count less the opponent's: pieces on the
+ * board, pieces in hand, and the mobility, open two-in-a-rows and blocked pieces counted
+ * by model.Features.
+ * <br>
+ * The weights can be tuned in a properties file read by load(), e.g.
+ * <pre>
+ * material = 100
+ * inHand = 100
+ * mobility = 5
+ * openTwos = 10
+ * blocked = -5
+ * </pre>
+ * Weights left out of the file keep their DEFAULT value. An Evaluation never changes, so
+ * any number of searches may share one.
+ *
+ */
+public final class Evaluation {
+
+	public static final Evaluation DEFAULT = new Evaluation(100, 100, 5, 0, 0);
+
+	private static final String[] KEYS = {"material", "inHand", "mobility", "openTwos", "blocked"};
+
+	private final int material, inHand, mobility, openTwos, blocked;
+
+	/**
+	 * @param material weight of each piece on the board
+	 * @param inHand weight of each piece still to be placed
+	 * @param mobility weight of each free node connected to a piece
+	 * @param openTwos weight of each line holding two pieces and a free node
+	 * @param blocked weight of each piece with no free node connected to it, usually negative
+	 */
+	public Evaluation(int material, int inHand, int mobility, int openTwos, int blocked){
+		this.material = material;
+		this.inHand = inHand;
+		this.mobility = mobility;
+		this.openTwos = openTwos;
+		this.blocked = blocked;
+	}
+
+	/**
+	 * Reads weights from a properties file with the keys material, inHand, mobility, openTwos and blocked
+	 * @param file weights file
+	 * @return evaluation with those weights, and DEFAULT weights for the keys left out
+	 * @throws IOException if the file cannot be read or holds an unknown key or a weight that is not a whole number
+	 */
+	public static Evaluation load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+
+		int[] weights = {DEFAULT.material, DEFAULT.inHand, DEFAULT.mobility, DEFAULT.openTwos, DEFAULT.blocked};
+		for (String name : properties.stringPropertyNames()){
+			int i = 0;
+			while (i < KEYS.length && !KEYS[i].equals(name)) i++;
+			if (i == KEYS.length) throw new IOException("Unknown weight " + name + " in " + file);
+			try {
+				weights[i] = Integer.parseInt(properties.getProperty(name).trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Weight " + name + " in " + file + " is not a whole number");
+			}
+		}
+		return new Evaluation(weights[0], weights[1], weights[2], weights[3], weights[4]);
+	}
+
+	/**
+	 * Scores a position, e.g. at the end of a line of the search
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the opponent
+	 * @param ownHand pieces the side to move has yet to place
+	 * @param oppHand pieces the opponent has yet to place
+	 * @return score from the point of view of the side to move
+	 */
+	public int evaluate(int own, int opp, int ownHand, int oppHand){
+		return score(own, opp) - score(opp, own) + inHand * (ownHand - oppHand);
+	}
+
+	// Weighted features of own's pieces and open two-in-a-rows
+	private int score(int own, int opp){
+		int empty = ~(own | opp) & Features.ALL_NODES;
+		int score = material * Integer.bitCount(own);
+		if (mobility != 0) score += mobility * Features.mobility(own, empty);	// Features weighted 0 are not counted at all
+		if (openTwos != 0) score += openTwos * Features.openTwos(own, opp, Features.ALL_LINES);
+		if (blocked != 0) score += blocked * Features.blocked(own, empty);
+		return score;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("material %d, inHand %d, mobility %d, openTwos %d, blocked %d",
+				material, inHand, mobility, openTwos, blocked);
+	}
+}
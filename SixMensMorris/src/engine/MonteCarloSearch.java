@@ -0,0 +1,409 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Board;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * The class MonteCarloSearch chooses moves by Monte Carlo tree search (UCT): it plays many
+ * quick games from the position with a Policy and grows a tree towards the moves that win
+ * most often. It can be stopped at any time and still give a sensible move, which suits
+ * strict time limits.
+ * <br>
+ * The tree lives in flat arrays allocated once, with the children of a node stored next
+ * to each other, so searching creates no objects. All threads share the one tree: a thread
+ * counts a visit on its way down before the playout is finished (a virtual loss), which
+ * steers the other threads to different branches in the meantime.
+ * <br>
+ * After a move, the part of the tree below the new position is kept for the next search,
+ * as long as the tree still has room.
+ *
+ */
+public class MonteCarloSearch {
+
+	public static final int MAX_PLIES = 200;	// Moves after which a playout is a draw
+	private static final int MAX_DEPTH = 256;	// Deepest path through the tree
+	private static final double EXPLORATION = 1.4;	// UCT exploration constant
+
+	// Node states
+	private static final int NEW = 0;	// Children not generated yet
+	private static final int EXPANDING = 1;	// A thread is generating the children
+	private static final int EXPANDED = 2;	// Children are in place; none means the side to move has lost
+	private static final int FULL = 3;	// The tree had no room for the children; playouts start here
+
+	// Outcomes, for the side to move, in half points
+	private static final int LOSS = 0;
+	private static final int DRAW = 1;
+	private static final int WIN = 2;
+
+	// The tree: node 0..size-1, children of a node at first[node]..first[node]+count[node]-1
+	private final int capacity;
+	private final int[] moves;	// Move that leads from the parent to the node
+	private final int[] first;
+	private final int[] count;
+	private final AtomicIntegerArray states;
+	private final AtomicIntegerArray visits;
+	private final AtomicIntegerArray scores;	// Half points won by the side that played the node's move
+	private final AtomicInteger size = new AtomicInteger();
+	private int root;
+
+	// Position at the root of the tree
+	private int rootRed, rootBlue, rootRedHand, rootBlueHand;
+	private boolean rootTurn;
+
+	private final int threads;
+	private final ExecutorService helpers;
+	private Policy policy = Policy.GREEDY_MILL;
+
+	private volatile boolean stopped;
+	private final AtomicLong playouts = new AtomicLong();
+	private int reused;	// Visits of the root kept from the previous search
+
+	/**
+	 * @param threads number of threads to search with, including the calling thread
+	 * @param capacity largest number of tree nodes
+	 */
+	public MonteCarloSearch(int threads, int capacity){
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+		if (capacity < 1 + MoveGenerator.MAX_MOVES) throw new IllegalArgumentException("capacity is too small");
+		this.threads = threads;
+		this.capacity = capacity;
+		moves = new int[capacity];
+		first = new int[capacity];
+		count = new int[capacity];
+		states = new AtomicIntegerArray(capacity);
+		visits = new AtomicIntegerArray(capacity);
+		scores = new AtomicIntegerArray(capacity);
+		helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "mcts-helper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+	}
+
+	/**
+	 * Plays games against a policy, alternating colours, to show the strength and speed of the search
+	 * <br>
+	 * Usage: java engine.MonteCarloSearch [playouts] [threads] [games] [opponent]
+	 */
+	public static void main(String[] args) {
+		long budget = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int games = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		Policy opponent = args.length > 3 ? Policy.valueOf(args[3].toUpperCase()) : Policy.GREEDY_MILL;
+
+		MonteCarloSearch search = new MonteCarloSearch(threads, 1 << 20);
+		int[] list = new int[MoveGenerator.MAX_MOVES];
+		int wins = 0, losses = 0;
+		long total = 0, reused = 0, moves = 0, start = System.nanoTime();
+		for (int game = 0; game < games; game++){
+			boolean side = game % 2 == 0 ? Board.RED : Board.BLUE;
+			Board board = new Board(Board.RED);
+			search.clear();
+			for (int ply = 0; ply < MAX_PLIES; ply++){
+				boolean turn = board.getTurn();
+				int position = board.getPosition();
+				int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+				int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+				int n = Integer.bitCount(own) + board.getInHand(turn) < 3 ? 0 : MoveGenerator.generate(own, opp, board.getInHand(turn), list);
+				if (n == 0) {
+					if (turn == side) losses++;
+					else wins++;
+					break;
+				}
+				if (turn == side) {
+					board.makeMove(search.findBestMove(board, Long.MAX_VALUE, budget));
+					total += search.getPlayouts();
+					reused += search.getReused();
+					moves++;
+				}
+				else board.makeMove(opponent.choose(own, opp, list, n, ThreadLocalRandom.current()));
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("MCTS vs %s: %d wins, %d losses, %d draws%n", opponent, wins, losses, games - wins - losses);
+		System.out.printf("%d threads, %.0f playouts/s, %.0f%% of each budget reused from the previous move%n",
+				threads, total / seconds, moves == 0 ? 0.0 : 100.0 * reused / (moves * (double) budget));
+		search.shutdown();
+	}
+
+	/**
+	 * @param policy how playouts choose their moves
+	 */
+	public void setPolicy(Policy policy){
+		this.policy = policy;
+	}
+
+	/**
+	 * Searches the given position on all threads until either budget runs out
+	 * @param board position to search; it is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxPlayouts playout budget, counting those of all threads
+	 * @return most visited move (see model.Move), or Move.NONE if there is no legal move
+	 */
+	public int findBestMove(Board board, long millis, final long maxPlayouts){
+		stopped = false;
+		playouts.set(0);
+		setRoot(board);
+		reused = visits.get(root);
+		final long deadline = System.nanoTime() + Math.min(millis, Long.MAX_VALUE / 2000000) * 1000000;
+
+		ArrayList<Future<?>> running = new ArrayList<Future<?>>();
+		for (int i = 1; i < threads; i++){
+			running.add(helpers.submit(new Runnable(){
+				@Override
+				public void run() {
+					new Worker().search(deadline, maxPlayouts);
+				}
+			}));
+		}
+		new Worker().search(deadline, maxPlayouts);
+
+		stopped = true;
+		for (Future<?> future : running){
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("MCTS helper failed", e.getCause());
+			}
+		}
+		return getBestMove();
+	}
+
+	/**
+	 * Stops all threads; findBestMove() then returns the best move so far
+	 */
+	public void stop(){
+		stopped = true;
+	}
+
+	/**
+	 * @return playouts run by all threads during the last search
+	 */
+	public long getPlayouts(){
+		return playouts.get();
+	}
+
+	/**
+	 * @return visits of the root that were kept from the previous search
+	 */
+	public int getReused(){
+		return reused;
+	}
+
+	/**
+	 * @return number of tree nodes in use
+	 */
+	public int getTreeSize(){
+		return Math.min(size.get(), capacity);
+	}
+
+	/**
+	 * Forgets the whole tree
+	 */
+	public void clear(){
+		size.set(0);
+		root = newNode(Move.NONE);
+	}
+
+	/**
+	 * Stops the helper threads for good
+	 */
+	public void shutdown(){
+		if (helpers != null) helpers.shutdownNow();
+	}
+
+	// Moves the root to the board's position, keeping the tree below it if it is the root or up to two moves below it
+	private void setRoot(Board board){
+		int position = board.getPosition();
+		int red = Board.getRed(position), blue = Board.getBlue(position);
+		int redHand = board.getInHand(Board.RED), blueHand = board.getInHand(Board.BLUE);
+		boolean turn = board.getTurn();
+
+		int found = -1;
+		if (size.get() > 0 && size.get() <= capacity * 3L / 4) found = find(root, rootRed, rootBlue, rootRedHand, rootBlueHand, rootTurn,
+				red, blue, redHand, blueHand, turn, 2);
+		if (found == -1) clear();
+		else root = found;
+		rootRed = red;
+		rootBlue = blue;
+		rootRedHand = redHand;
+		rootBlueHand = blueHand;
+		rootTurn = turn;
+	}
+
+	// Looks for the wanted position at node or up to depth moves below it
+	private int find(int node, int red, int blue, int redHand, int blueHand, boolean turn,
+			int wantRed, int wantBlue, int wantRedHand, int wantBlueHand, boolean wantTurn, int depth){
+		if (red == wantRed && blue == wantBlue && redHand == wantRedHand && blueHand == wantBlueHand && turn == wantTurn) return node;
+		if (depth == 0 || states.get(node) != EXPANDED) return -1;
+		for (int child = first[node], end = child + count[node]; child < end; child++){
+			int move = moves[child];
+			int own = turn == Board.RED ? red : blue, opp = turn == Board.RED ? blue : red;
+			int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+			own = from == Move.NONE ? own | (1 << to) : own ^ ((1 << from) | (1 << to));
+			if (capture != Move.NONE) opp &= ~(1 << capture);
+			int newRedHand = turn == Board.RED && from == Move.NONE ? redHand - 1 : redHand;
+			int newBlueHand = turn == Board.BLUE && from == Move.NONE ? blueHand - 1 : blueHand;
+			int found = find(child, turn == Board.RED ? own : opp, turn == Board.RED ? opp : own, newRedHand, newBlueHand, !turn,
+					wantRed, wantBlue, wantRedHand, wantBlueHand, wantTurn, depth - 1);
+			if (found != -1) return found;
+		}
+		return -1;
+	}
+
+	// Most visited child of the root
+	private int getBestMove(){
+		if (states.get(root) != EXPANDED) return Move.NONE;
+		int best = Move.NONE, bestVisits = -1;
+		for (int child = first[root], end = child + count[root]; child < end; child++){
+			if (visits.get(child) > bestVisits){
+				bestVisits = visits.get(child);
+				best = moves[child];
+			}
+		}
+		return best;
+	}
+
+	// Reserves a node, or returns -1 if the tree is full
+	private int newNode(int move){
+		int node = size.getAndIncrement();
+		if (node >= capacity) return -1;
+		initNode(node, move);
+		return node;
+	}
+
+	private void initNode(int node, int move){
+		moves[node] = move;
+		count[node] = 0;
+		visits.set(node, 0);
+		scores.set(node, 0);
+		states.set(node, NEW);
+	}
+
+	/**
+	 * Runs playouts on one thread, walking a private copy of the position down the shared tree
+	 */
+	private class Worker {
+		private final int[] path = new int[MAX_DEPTH];
+		private final int[] list = new int[MoveGenerator.MAX_MOVES];
+		private final Random random = ThreadLocalRandom.current();
+
+		// Position being walked, from the side to move's point of view
+		private int own, opp, ownHand, oppHand;
+
+		void search(long deadline, long maxPlayouts){
+			for (long n = 0; !stopped; n++){
+				if (playouts.getAndIncrement() >= maxPlayouts) {
+					playouts.decrementAndGet();
+					break;
+				}
+				if ((n & 63) == 0 && System.nanoTime() - deadline >= 0) break;
+				playout();
+			}
+		}
+
+		// One pass: select a leaf, expand it, play a game out from it and back the result up the path
+		private void playout(){
+			own = rootTurn == Board.RED ? rootRed : rootBlue;
+			opp = rootTurn == Board.RED ? rootBlue : rootRed;
+			ownHand = rootTurn == Board.RED ? rootRedHand : rootBlueHand;
+			oppHand = rootTurn == Board.RED ? rootBlueHand : rootRedHand;
+
+			int node = root, depth = 0;
+			path[0] = node;
+			visits.incrementAndGet(node);
+			while (depth < MAX_DEPTH - 1){
+				int state = states.get(node);
+				if (state == NEW && states.compareAndSet(node, NEW, EXPANDING)) state = expand(node);
+				if (state != EXPANDED || count[node] == 0) break;
+
+				node = select(node);
+				int visited = visits.incrementAndGet(node);	// Counts as a loss until the result is added
+				path[++depth] = node;
+				play(moves[node]);
+				if (visited == 1) break;	// Play out from a new node once before expanding it
+			}
+
+			int result = rollout();
+			for (int i = depth; i > 0; i--){
+				result = WIN - result;	// The side that played path[i]'s move is the other side
+				scores.addAndGet(path[i], result);
+			}
+		}
+
+		// Generates the children of node; the calling thread holds it in the EXPANDING state
+		private int expand(int node){
+			int n = Integer.bitCount(own) + ownHand < 3 ? 0 : MoveGenerator.generate(own, opp, ownHand, list);
+			int start = n == 0 ? 0 : size.getAndAdd(n);
+			if (n > 0 && start + n > capacity) {
+				states.set(node, FULL);
+				return FULL;
+			}
+			for (int i = 0; i < n; i++) initNode(start + i, list[i]);
+			first[node] = start;
+			count[node] = n;
+			states.set(node, EXPANDED);	// Publishes the children to the other threads
+			return EXPANDED;
+		}
+
+		// Child with the highest upper confidence bound, trying unvisited children first
+		private int select(int node){
+			int start = first[node], end = start + count[node];
+			double logVisits = Math.log(Math.max(1, visits.get(node)));
+			int best = start;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = start; child < end; child++){
+				int v = visits.get(child);
+				if (v == 0) return child;
+				double value = scores.get(child) / (double) (WIN * v) + EXPLORATION * Math.sqrt(logVisits / v);
+				if (value > bestValue){
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		// Plays move for the side to move and hands the turn over
+		private void play(int move){
+			int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+			if (from == Move.NONE){
+				own |= 1 << to;
+				ownHand--;
+			} else {
+				own ^= (1 << from) | (1 << to);
+			}
+			if (capture != Move.NONE) opp &= ~(1 << capture);
+			int swap = own; own = opp; opp = swap;
+			swap = ownHand; ownHand = oppHand; oppHand = swap;
+		}
+
+		// Plays the game out with the policy; returns the outcome for the side to move at the start
+		private int rollout(){
+			for (int ply = 0; ply < MAX_PLIES; ply++){
+				int n = Integer.bitCount(own) + ownHand < 3 ? 0 : MoveGenerator.generate(own, opp, ownHand, list);
+				if (n == 0) return (ply & 1) == 0 ? LOSS : WIN;
+				play(policy.choose(own, opp, list, n, random));
+			}
+			return DRAW;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import model.Board;
+import model.Move;
+import model.MoveGenerator;
+import model.Symmetry;
+
+/**
+ * The class OpeningBook suggests moves for the placement phase from the results of many
+ * earlier games. The book is written by OpeningBookBuilder.
+ * <br>
+ * Each entry gives the number of games that reached a position and the half points scored
+ * in them by the side that had just moved. Positions are keyed from the point of view of
+ * the side to move and in their canonical orientation (see model.Symmetry), so games with
+ * either colour and any rotation or reflection count towards the same entry. To choose a
+ * move, every legal move's resulting position is looked up and the best scoring one is
+ * played.
+ * <br>
+ * Entries are sorted by key. The file is mapped into memory and searched in place by
+ * binary search, so a lookup creates no objects and any number of threads may read at once.
+ *
+ */
+public final class OpeningBook {
+
+	static final int MAGIC = 0x534D4D42;	// "SMMB"
+	static final int VERSION = 1;
+	static final int HEADER = 16;	// Magic, version, number of entries, minimum games per entry
+	static final int ENTRY = 16;	// Key, games, half points
+
+	private final MappedByteBuffer book;
+	private final int size;
+
+	private OpeningBook(MappedByteBuffer book){
+		this.book = book;
+		this.size = book.getInt(8);
+	}
+
+	/**
+	 * Maps a book file into memory
+	 * @param file book written by OpeningBookBuilder
+	 * @return book reading from that file
+	 * @throws IOException if the file cannot be read or is not a book
+	 */
+	public static OpeningBook open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER) throw new IOException("Not an opening book: " + file);
+			MappedByteBuffer book = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (book.getInt(0) != MAGIC || book.getInt(4) != VERSION) throw new IOException("Not an opening book: " + file);
+			if (channel.size() != HEADER + (long) book.getInt(8) * ENTRY) throw new IOException("Wrong opening book size: " + file);
+			return new OpeningBook(book);
+		} finally {
+			raf.close();	// The mapping stays valid after the file is closed
+		}
+	}
+
+	/**
+	 * @return number of positions in the book
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Picks the legal move whose resulting position has scored best for the side playing it
+	 * @param board position to move from, during the placement phase; it is not changed
+	 * @param moves scratch space of at least MoveGenerator.MAX_MOVES entries, one per calling thread
+	 * @return best book move (see model.Move), or Move.NONE if the book has none of the resulting positions
+	 */
+	public int probe(Board board, int[] moves){
+		boolean turn = board.getTurn();
+		int position = board.getPosition();
+		int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+		int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+		int ownHand = board.getInHand(turn), oppHand = board.getInHand(!turn);
+		if (ownHand == 0 && oppHand == 0) return Move.NONE;
+
+		int count = MoveGenerator.generate(own, opp, ownHand, moves);
+		int best = Move.NONE;
+		long bestScore = -1, bestGames = 0;
+		for (int i = 0; i < count; i++){
+			int entry = find(childKey(moves[i], own, opp, ownHand, oppHand));
+			if (entry < 0) continue;
+			long games = book.getInt(entry + 8), score = book.getInt(entry + 12);
+			// Compare score / games without dividing; more games break ties
+			if (best == Move.NONE || score * bestGames > bestScore * games || (score * bestGames == bestScore * games && games > bestGames)){
+				best = moves[i];
+				bestScore = score;
+				bestGames = games;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the opponent
+	 * @param ownHand pieces the side to move has yet to place
+	 * @param oppHand pieces the opponent has yet to place
+	 * @return book key of the position, the same for all its rotations and reflections
+	 */
+	static long key(int own, int opp, int ownHand, int oppHand){
+		int canonical = Symmetry.getPosition(Symmetry.canonical(own, opp));
+		return (canonical & 0xFFFFFFFFL) | (long) ownHand << 32 | (long) oppHand << 35;
+	}
+
+	/**
+	 * @return book key of the position after move, seen from the opponent who is then to move
+	 */
+	static long childKey(int move, int own, int opp, int ownHand, int oppHand){
+		int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+		if (from == Move.NONE){
+			own |= 1 << to;
+			ownHand--;
+		} else {
+			own ^= (1 << from) | (1 << to);
+		}
+		if (capture != Move.NONE) opp &= ~(1 << capture);
+		return key(opp, own, oppHand, ownHand);
+	}
+
+	// Binary search for key; returns the entry's byte offset, or -1
+	private int find(long key){
+		int low = 0, high = size - 1;
+		while (low <= high){
+			int middle = (low + high) >>> 1;
+			long found = book.getLong(HEADER + middle * ENTRY);
+			if (found < key) low = middle + 1;
+			else if (found > key) high = middle - 1;
+			else return HEADER + middle * ENTRY;
+		}
+		return -1;
+	}
+}
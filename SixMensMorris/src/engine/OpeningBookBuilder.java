@@ -0,0 +1,155 @@
+package engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import model.Board;
+import model.GameRecord;
+import model.GameRecordReader;
+import model.Move;
+
+/**
+ * The class OpeningBookBuilder counts, for every placement-phase position reached in a set of
+ * recorded games, how many games reached it and how they ended, and writes the positions seen
+ * often enough as an OpeningBook. Games are read from game record files, e.g. written by
+ * SelfPlay or by matches between searches.
+ * <br>
+ * Usage: java engine.OpeningBookBuilder book minGames records...
+ *
+ */
+public class OpeningBookBuilder {
+
+	private static final int MAXPIECES = 6;
+
+	// Open addressing table of positions; a slot is free while its game count is 0
+	private long[] keys = new long[1 << 16];
+	private int[] games = new int[1 << 16];
+	private int[] scores = new int[1 << 16];	// Half points of the side that moved into the position
+	private int size;
+
+	private long gamesRead;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java engine.OpeningBookBuilder book minGames records...");
+			return;
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder();
+		long start = System.nanoTime();
+		for (int i = 2; i < args.length; i++) builder.addGames(new File(args[i]));
+		int written = builder.write(new File(args[0]), Integer.parseInt(args[1]));
+		System.out.printf("%d games, %d positions, %d written to %s in %.1f s%n",
+				builder.gamesRead, builder.size, written, args[0], (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Counts the placement-phase positions of every finished game in a record file
+	 * @param file game record file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void addGames(File file) throws IOException {
+		GameRecord record = new GameRecord();
+		try (GameRecordReader in = new GameRecordReader(file)) {
+			while (in.next(record)) addGame(record);
+		}
+	}
+
+	/**
+	 * Counts the positions reached while pieces were still being placed; unfinished games are skipped
+	 * @param record game played from the empty board
+	 */
+	public void addGame(GameRecord record){
+		if (record.getResult() == GameRecord.UNFINISHED) return;
+		gamesRead++;
+
+		int own = 0, opp = 0, ownHand = MAXPIECES, oppHand = MAXPIECES;
+		boolean turn = record.getFirstTurn();
+		for (int ply = 0; ply < record.getLength() && (ownHand > 0 || oppHand > 0); ply++){
+			int move = record.getMove(ply);
+			int score = record.getResult() == GameRecord.DRAW ? 1
+					: (record.getResult() == GameRecord.RED_WIN) == (turn == Board.RED) ? 2 : 0;
+			add(OpeningBook.childKey(move, own, opp, ownHand, oppHand), score);
+
+			int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+			if (from == Move.NONE){
+				own |= 1 << to;
+				ownHand--;
+			} else {
+				own ^= (1 << from) | (1 << to);
+			}
+			if (capture != Move.NONE) opp &= ~(1 << capture);
+			int swap = own; own = opp; opp = swap;
+			swap = ownHand; ownHand = oppHand; oppHand = swap;
+			turn = !turn;
+		}
+	}
+
+	/**
+	 * Writes every position reached in at least minGames games, sorted by key
+	 * @param file destination, replaced if it exists
+	 * @param minGames fewest games a position needs to be trusted
+	 * @return number of positions written
+	 * @throws IOException if the file cannot be written
+	 */
+	public int write(File file, int minGames) throws IOException {
+		long[] sorted = new long[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) if (games[i] >= Math.max(1, minGames)) sorted[n++] = keys[i];
+		Arrays.sort(sorted, 0, n);
+
+		ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER + n * OpeningBook.ENTRY);
+		buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(n).putInt(minGames);
+		for (int i = 0; i < n; i++){
+			int slot = slot(sorted[i]);
+			buffer.putLong(sorted[i]).putInt(games[slot]).putInt(scores[slot]);
+		}
+		buffer.flip();
+
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			FileChannel channel = out.getChannel();
+			while (buffer.hasRemaining()) channel.write(buffer);
+		} finally {
+			out.close();
+		}
+		return n;
+	}
+
+	private void add(long key, int score){
+		int slot = slot(key);
+		if (games[slot] == 0) {
+			keys[slot] = key;
+			size++;
+		}
+		games[slot]++;
+		scores[slot] += score;
+		if (size > keys.length / 2) grow();
+	}
+
+	// Slot holding key, or the free slot where it belongs
+	private int slot(long key){
+		int mask = keys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while (games[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow(){
+		long[] oldKeys = keys;
+		int[] oldGames = games, oldScores = scores;
+		keys = new long[2 * oldKeys.length];
+		games = new int[keys.length];
+		scores = new int[keys.length];
+		for (int i = 0; i < oldKeys.length; i++){
+			if (oldGames[i] == 0) continue;
+			int slot = slot(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			games[slot] = oldGames[i];
+			scores[slot] = oldScores[i];
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import model.Board;
+
+/**
+ * The class ParallelSearch spreads a search over several threads using Lazy SMP:
+ * every thread searches the same position with its own Search and its own copy of
+ * the Board, and they share one TranspositionTable so that each thread benefits
+ * from what the others have already found.
+ * <br>
+ * The calling thread runs the main search; its result is returned and the helper
+ * threads are stopped as soon as it finishes.
+ *
+ */
+public class ParallelSearch {
+
+	private final Search[] searches;
+	private final ExecutorService helpers;
+
+	/**
+	 * @param threads number of threads to search with, including the calling thread
+	 * @param table transposition table shared by all threads
+	 */
+	public ParallelSearch(int threads, TranspositionTable table){
+		if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+		searches = new Search[threads];
+		for (int i = 0; i < threads; i++){
+			searches[i] = new Search(table);
+			searches[i].setHelper(i);
+		}
+		helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "search-helper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+	}
+
+	/**
+	 * @return number of threads searching, including the calling thread
+	 */
+	public int getThreads(){
+		return searches.length;
+	}
+
+	/**
+	 * @param tablebase endgame table for all threads to look up movement-phase positions in, or null
+	 */
+	public void setTablebase(Tablebase tablebase){
+		for (Search search : searches) search.setTablebase(tablebase);
+	}
+
+	/**
+	 * @param evaluation weights for all threads to score positions with
+	 */
+	public void setEvaluation(Evaluation evaluation){
+		for (Search search : searches) search.setEvaluation(evaluation);
+	}
+
+	/**
+	 * Searches the given position on all threads until the budget runs out
+	 * or the main search has completed maxDepth
+	 * @param board position to search; it is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxNodes node budget of the main search
+	 * @param maxDepth deepest iteration to run
+	 * @return best move found by the main search (see model.Move), or Move.NONE if there is no legal move
+	 */
+	public int findBestMove(final Board board, final long millis, long maxNodes, final int maxDepth){
+		ArrayList<Future<?>> running = new ArrayList<Future<?>>();
+		for (Search search : searches) search.clearStop();	// Before any thread starts, so that no stop is lost
+		for (int i = 1; i < searches.length; i++){
+			final Search helper = searches[i];
+			final Board copy = new Board(board);
+			running.add(helpers.submit(new Runnable(){
+				@Override
+				public void run() {
+					helper.search(copy, millis, Long.MAX_VALUE, Search.MAX_PLY);	// Returns at once if already stopped
+				}
+			}));
+		}
+
+		int move = searches[0].search(board, millis, maxNodes, maxDepth);
+
+		for (int i = 1; i < searches.length; i++) searches[i].stop();
+		for (Future<?> future : running){
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search helper failed", e.getCause());
+			}
+		}
+		return move;
+	}
+
+	/**
+	 * @param board position to search; it is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxNodes node budget of the main search
+	 * @return best move found by the main search (see model.Move), or Move.NONE if there is no legal move
+	 */
+	public int findBestMove(Board board, long millis, long maxNodes){
+		return findBestMove(board, millis, maxNodes, Search.MAX_PLY);
+	}
+
+	/**
+	 * Stops all threads; findBestMove() then returns the main search's best move so far
+	 */
+	public void stop(){
+		for (Search search : searches) search.stop();
+	}
+
+	/**
+	 * @return positions visited by all threads during the last search
+	 */
+	public long getNodes(){
+		long nodes = 0;
+		for (Search search : searches) nodes += search.getNodes();
+		return nodes;
+	}
+
+	/**
+	 * @return deepest iteration completed by the main search
+	 */
+	public int getDepth(){
+		return searches[0].getDepth();
+	}
+
+	/**
+	 * @return score of the best move of the main search
+	 */
+	public int getScore(){
+		return searches[0].getScore();
+	}
+
+	/**
+	 * Stops the helper threads for good
+	 */
+	public void shutdown(){
+		if (helpers != null) helpers.shutdownNow();
+	}
+}
@@ -0,0 +1,148 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.Board;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * The class Perft counts the leaves of the legal game tree below a position, to check
+ * move generation, captures and node connections against known counts and to measure
+ * raw model throughput. A side left with fewer than three pieces has no moves, so games
+ * that end early add nothing to the count.
+ * <br>
+ * Usage: java engine.Perft depth [threads], searching from the empty board with red to move
+ *
+ */
+public class Perft {
+
+	private final int[][] moves;
+
+	private Perft(int depth){
+		moves = new int[depth + 1][MoveGenerator.MAX_MOVES];
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		Board board = new Board(Board.RED);
+		long start = System.nanoTime();
+		long[] counts = divide(board, depth, threads);
+		long nanos = System.nanoTime() - start;
+
+		int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generate(board, rootMoves);
+		long total = 0;
+		for (int i = 0; i < count; i++){
+			System.out.println(Move.toString(rootMoves[i]) + ": " + counts[i]);
+			total += counts[i];
+		}
+		System.out.printf("%nDepth %d: %d nodes in %.1f ms (%.0f nodes/s, %d threads)%n",
+				depth, total, nanos / 1e6, total / (nanos / 1e9), threads);
+	}
+
+	/**
+	 * @param board position to count from; it is not changed
+	 * @param depth number of plies
+	 * @return number of positions reached after exactly depth plies
+	 */
+	public static long perft(Board board, int depth){
+		if (depth == 0) return 1;
+		long total = 0;
+		for (long count : divide(board, depth)) total += count;
+		return total;
+	}
+
+	/**
+	 * @param board position to count from; it is not changed
+	 * @param depth number of plies, at least 1
+	 * @return leaf count below each root move, in MoveGenerator order
+	 */
+	public static long[] divide(Board board, int depth){
+		try {
+			return divide(board, depth, 1);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);	// Cannot happen without worker threads
+		}
+	}
+
+	/**
+	 * Counts each root move's subtree on one of several threads
+	 * @param board position to count from; it is not changed
+	 * @param depth number of plies, at least 1
+	 * @param threads number of threads to split the root moves over
+	 * @return leaf count below each root move, in MoveGenerator order
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public static long[] divide(Board board, final int depth, int threads) throws InterruptedException {
+		final boolean turn = board.getTurn();
+		int position = board.getPosition();
+		final int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+		final int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+		final int ownHand = board.getInHand(turn), oppHand = board.getInHand(!turn);
+
+		final int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+		int count = Integer.bitCount(own) + ownHand < 3 ? 0 : MoveGenerator.generate(own, opp, ownHand, rootMoves);
+		long[] counts = new long[count];
+
+		if (threads <= 1) {
+			Perft perft = new Perft(depth);
+			for (int i = 0; i < count; i++) counts[i] = perft.child(rootMoves[i], own, opp, ownHand, oppHand, depth - 1);
+			return counts;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (int i = 0; i < count; i++){
+				final int move = rootMoves[i];
+				results.add(pool.submit(new Callable<Long>(){
+					@Override
+					public Long call() {
+						return new Perft(depth).child(move, own, opp, ownHand, oppHand, depth - 1);
+					}
+				}));
+			}
+			for (int i = 0; i < count; i++) counts[i] = results.get(i).get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Perft worker failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return counts;
+	}
+
+	// Plays move for the side to move and counts below the resulting position
+	private long child(int move, int own, int opp, int ownHand, int oppHand, int depth){
+		int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+		if (from == Move.NONE){
+			own |= 1 << to;
+			ownHand--;
+		} else {
+			own ^= (1 << from) | (1 << to);
+		}
+		if (capture != Move.NONE) opp &= ~(1 << capture);
+		return count(opp, own, oppHand, ownHand, depth);
+	}
+
+	private long count(int own, int opp, int ownHand, int oppHand, int depth){
+		if (depth == 0) return 1;
+		if (Integer.bitCount(own) + ownHand < 3) return 0;
+
+		int[] list = moves[depth];
+		int count = MoveGenerator.generate(own, opp, ownHand, list);
+		if (depth == 1) return count;
+
+		long total = 0;
+		for (int i = 0; i < count; i++) total += child(list[i], own, opp, ownHand, oppHand, depth - 1);
+		return total;
+	}
+}
@@ -0,0 +1,79 @@
+package engine;
+
+import java.util.Random;
+
+import model.BoardLayout;
+import model.Move;
+
+/**
+ * The enum Policy lists the cheap move choosers used to play games without searching,
+ * e.g. by SelfPlay. A policy only looks at the position and the legal moves, so one
+ * instance can be shared by any number of threads as long as each has its own Random.
+ *
+ */
+public enum Policy {
+
+	/**
+	 * Any legal move, each equally likely
+	 */
+	RANDOM {
+		@Override
+		public int choose(int own, int opp, int[] moves, int count, Random random){
+			return moves[random.nextInt(count)];
+		}
+	},
+
+	/**
+	 * Closes a three-in-a-row when possible, otherwise blocks one the opponent could close,
+	 * otherwise plays any legal move
+	 */
+	GREEDY_MILL {
+		@Override
+		public int choose(int own, int opp, int[] moves, int count, Random random){
+			int captures = 0;
+			for (int i = 0; i < count; i++) if (Move.getCapture(moves[i]) != Move.NONE) captures = moveToFront(moves, i, captures);
+			if (captures > 0) return moves[random.nextInt(captures)];
+
+			int threats = getThreats(opp, own);
+			int blocks = 0;
+			for (int i = 0; i < count; i++) if ((threats & (1 << Move.getTo(moves[i]))) != 0) blocks = moveToFront(moves, i, blocks);
+			if (blocks > 0) return moves[random.nextInt(blocks)];
+
+			return moves[random.nextInt(count)];
+		}
+	};
+
+	/**
+	 * Picks a move for the side to move. The order of moves may be changed.
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the other side
+	 * @param moves legal moves, as generated by MoveGenerator
+	 * @param count number of legal moves, at least 1
+	 * @param random source of randomness owned by the calling thread
+	 * @return the chosen packed move
+	 */
+	public abstract int choose(int own, int opp, int[] moves, int count, Random random);
+
+	/**
+	 * @param side occupancy of the side that could close a three-in-a-row
+	 * @param other occupancy of the other side
+	 * @return mask of the empty nodes that would complete a three-in-a-row for side
+	 */
+	static int getThreats(int side, int other){
+		int threats = 0;
+		for (int i = 0; i < BoardLayout.MILL_COUNT; i++){
+			int mill = BoardLayout.getMill(i);
+			int missing = mill & ~side;
+			if (Integer.bitCount(missing) == 1 && (missing & other) == 0) threats |= missing;
+		}
+		return threats;
+	}
+
+	// Swaps moves[i] into position front, returning the next free front position
+	private static int moveToFront(int[] moves, int i, int front){
+		int move = moves[i];
+		moves[i] = moves[front];
+		moves[front] = move;
+		return front + 1;
+	}
+}
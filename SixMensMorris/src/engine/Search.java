@@ -0,0 +1,304 @@
+package engine;
+
+import model.Board;
+import model.Move;
+import model.MoveGenerator;
+import model.Zobrist;
+
+/**
+ * The class Search finds the best move for the side to move using negamax with
+ * alpha-beta pruning and iterative deepening.
+ * <br>
+ * Positions are searched as primitive occupancy masks copied down the call stack,
+ * with moves written into per-ply buffers, so the search creates no objects once
+ * constructed. The best move of each position is kept in a TranspositionTable and
+ * tried first on the next iteration (principal variation move ordering).
+ * <br>
+ * A Search is meant to be used by one thread at a time; several may share a table.
+ *
+ */
+public class Search {
+
+	public static final int INFINITY = 30000;
+	public static final int WIN = 20000;	// Score of a won position, less the number of plies to reach it
+	public static final int MAX_PLY = 64;
+
+	private static final int WIN_BOUND = WIN - 1000;	// Scores beyond this are wins or losses, including those from the tablebase
+
+	private final TranspositionTable table;
+	private Tablebase tablebase;	// Exact results for the movement phase, or null if none is loaded
+	private Evaluation evaluation = Evaluation.DEFAULT;
+	private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+
+	private long nodes;
+	private long nodeLimit;
+	private long deadline;
+	private volatile boolean stopped;
+
+	private int completedDepth;
+	private int bestScore;
+	private int helper = 0;	// Non-zero for Lazy SMP helpers, which start from a different root move order
+
+	/**
+	 * @param table transposition table to use, which may be shared with other searches
+	 */
+	public Search(TranspositionTable table){
+		this.table = table;
+	}
+
+	/**
+	 * Searches the given position deeper and deeper until the time or node budget runs out
+	 * @param board position to search; it is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxNodes node budget
+	 * @return best move found (see model.Move), or Move.NONE if the side to move has no legal move
+	 */
+	public int findBestMove(Board board, long millis, long maxNodes){
+		return findBestMove(board, millis, maxNodes, MAX_PLY);
+	}
+
+	/**
+	 * Searches the given position deeper and deeper until the time or node budget runs out
+	 * or the given depth has been completed
+	 * @param board position to search; it is not changed
+	 * @param millis time budget in milliseconds
+	 * @param maxNodes node budget
+	 * @param maxDepth deepest iteration to run
+	 * @return best move found (see model.Move), or Move.NONE if the side to move has no legal move
+	 */
+	public int findBestMove(Board board, long millis, long maxNodes, int maxDepth){
+		stopped = false;
+		return search(board, millis, maxNodes, maxDepth);
+	}
+
+	/**
+	 * Like findBestMove(), but a stop() made before the call is kept, so that a parallel
+	 * search can stop a helper that has not started yet (see ParallelSearch)
+	 */
+	int search(Board board, long millis, long maxNodes, int maxDepth){
+		boolean turn = board.getTurn();
+		int position = board.getPosition();
+		int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+		int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+		int ownHand = board.getInHand(turn), oppHand = board.getInHand(!turn);
+		long key = board.getKey();
+
+		nodes = 0;
+		nodeLimit = maxNodes;
+		deadline = System.nanoTime() + millis * 1000000L;
+		completedDepth = 0;
+		bestScore = 0;
+
+		int[] rootMoves = moves[0];
+		int count = MoveGenerator.generate(own, opp, ownHand, rootMoves);
+		if (count == 0) return Move.NONE;
+		int bestMove = rootMoves[0];
+		if (count == 1) return bestMove;
+		if (helper > 0) rotate(rootMoves, count, helper % count);
+
+		for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY); depth++){
+			int alpha = -INFINITY, iterationMove = Move.NONE;
+			for (int i = 0; i < count; i++){
+				int move = rootMoves[i];
+				int score = -child(move, own, opp, ownHand, oppHand, turn, key, depth - 1, 1, -INFINITY, -alpha);
+				if (stopped) break;
+				if (score > alpha){
+					alpha = score;
+					iterationMove = move;
+				}
+			}
+			if (iterationMove != Move.NONE){
+				// A move that beat the previous best is trustworthy even from an unfinished iteration
+				bestMove = iterationMove;
+				bestScore = alpha;
+				moveToFront(rootMoves, count, bestMove);
+			}
+			if (stopped) break;
+			completedDepth = depth;
+			if (Math.abs(alpha) >= WIN_BOUND) break;	// Forced result found, deeper searches cannot change it
+		}
+		return bestMove;
+	}
+
+	/**
+	 * @param tablebase endgame table to look up movement-phase positions in, or null to search them
+	 */
+	public void setTablebase(Tablebase tablebase){
+		this.tablebase = tablebase;
+	}
+
+	/**
+	 * @param evaluation weights to score the positions at the end of the searched lines with
+	 */
+	public void setEvaluation(Evaluation evaluation){
+		this.evaluation = evaluation;
+	}
+
+	/**
+	 * Makes this search a helper of a parallel search (see ParallelSearch): it walks the
+	 * root moves in a different order so that threads sharing a table fill it with
+	 * different parts of the tree
+	 * @param id helper number, 0 for the main search
+	 */
+	void setHelper(int id){
+		this.helper = id;
+	}
+
+	/**
+	 * Stops a running search as soon as possible; findBestMove() then returns its best move so far
+	 */
+	public void stop(){
+		stopped = true;
+	}
+
+	/**
+	 * Readies the search to be started by search(); any later stop() is kept
+	 */
+	void clearStop(){
+		stopped = false;
+	}
+
+	/**
+	 * @return deepest iteration completed by the last search
+	 */
+	public int getDepth(){
+		return completedDepth;
+	}
+
+	/**
+	 * @return positions visited by the last search
+	 */
+	public long getNodes(){
+		return nodes;
+	}
+
+	/**
+	 * @return score of the best move of the last search for the side that moved
+	 */
+	public int getScore(){
+		return bestScore;
+	}
+
+	// Plays move for the side to move and searches the resulting position from the opponent's side
+	private int child(int move, int own, int opp, int ownHand, int oppHand, boolean turn, long key,
+			int depth, int ply, int alpha, int beta){
+		int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+		key ^= Zobrist.side() ^ Zobrist.piece(turn, to);
+		if (from == Move.NONE){
+			key ^= Zobrist.hand(turn, ownHand) ^ Zobrist.hand(turn, ownHand - 1);
+			ownHand--;
+			own |= 1 << to;
+		} else {
+			key ^= Zobrist.piece(turn, from);
+			own ^= (1 << from) | (1 << to);
+		}
+		if (capture != Move.NONE){
+			key ^= Zobrist.piece(!turn, capture);
+			opp &= ~(1 << capture);
+		}
+		return negamax(opp, own, oppHand, ownHand, !turn, key, depth, ply, alpha, beta);
+	}
+
+	private int negamax(int own, int opp, int ownHand, int oppHand, boolean turn, long key,
+			int depth, int ply, int alpha, int beta){
+		if ((++nodes & 1023) == 0 && (nodes >= nodeLimit || System.nanoTime() - deadline >= 0)) stopped = true;
+		if (stopped) return 0;
+
+		if (Integer.bitCount(own) + ownHand < 3) return -(WIN - ply);	// Too few pieces left to form a three-in-a-row
+
+		if (tablebase != null && ownHand == 0 && oppHand == 0){
+			int entry = tablebase.probe(own, opp);
+			if (entry != Tablebase.UNKNOWN){
+				if (Tablebase.isWin(entry)) return WIN - ply - Tablebase.getDistance(entry);
+				if (Tablebase.isLoss(entry)) return -(WIN - ply - Tablebase.getDistance(entry));
+				return 0;
+			}
+		}
+
+		int hashMove = Move.NONE;
+		long entry = table.probe(key);
+		if (entry != TranspositionTable.MISS){
+			hashMove = TranspositionTable.getMove(entry);
+			if (TranspositionTable.getDepth(entry) >= depth){
+				int score = fromTable(TranspositionTable.getScore(entry), ply);
+				int flag = TranspositionTable.getFlag(entry);
+				if (flag == TranspositionTable.EXACT
+						|| (flag == TranspositionTable.LOWER && score >= beta)
+						|| (flag == TranspositionTable.UPPER && score <= alpha)) return score;
+			}
+		}
+
+		int[] list = moves[ply];
+		int count = MoveGenerator.generate(own, opp, ownHand, list);
+		if (count == 0) return -(WIN - ply);	// Blocked in
+		if (depth <= 0 || ply >= MAX_PLY) return evaluation.evaluate(own, opp, ownHand, oppHand);
+
+		orderMoves(list, count, hashMove);
+
+		int originalAlpha = alpha, bestMove = list[0], best = -INFINITY;
+		for (int i = 0; i < count; i++){
+			int move = list[i];
+			int score = -child(move, own, opp, ownHand, oppHand, turn, key, depth - 1, ply + 1, -beta, -alpha);
+			if (stopped) return 0;
+			if (score > best){
+				best = score;
+				bestMove = move;
+				if (score > alpha){
+					alpha = score;
+					if (alpha >= beta) break;
+				}
+			}
+		}
+
+		int flag = best <= originalAlpha ? TranspositionTable.UPPER : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(key, bestMove, toTable(best, ply), depth, flag);
+		return best;
+	}
+
+	// Tries the hash move first, then captures, then everything else
+	private static void orderMoves(int[] list, int count, int hashMove){
+		int next = 0;
+		if (hashMove != Move.NONE) next = moveToFront(list, count, hashMove);
+		for (int i = next; i < count; i++){
+			if (Move.getCapture(list[i]) != Move.NONE){
+				int move = list[i];
+				list[i] = list[next];
+				list[next++] = move;
+			}
+		}
+	}
+
+	// Shifts the first count moves left by n places
+	private static void rotate(int[] list, int count, int n){
+		for (int i = 0; i < n; i++){
+			int first = list[0];
+			System.arraycopy(list, 1, list, 0, count - 1);
+			list[count - 1] = first;
+		}
+	}
+
+	// Returns the number of moves now in front (1 if the move was found, otherwise 0)
+	private static int moveToFront(int[] list, int count, int move){
+		for (int i = 0; i < count; i++){
+			if (list[i] == move){
+				System.arraycopy(list, 0, list, 1, i);
+				list[0] = move;
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	// Win and loss scores are stored relative to the position rather than the root
+	private static int toTable(int score, int ply){
+		if (score >= WIN_BOUND) return score + ply;
+		if (score <= -WIN_BOUND) return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply){
+		if (score >= WIN_BOUND) return score - ply;
+		if (score <= -WIN_BOUND) return score + ply;
+		return score;
+	}
+}
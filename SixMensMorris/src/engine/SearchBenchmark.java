@@ -0,0 +1,42 @@
+package engine;
+
+import model.Board;
+
+/**
+ * The class SearchBenchmark measures how ParallelSearch scales with the number of threads:
+ * for 1 to N threads it searches the opening position to a fixed depth and prints the
+ * time to depth, nodes per second and speed-up over a single thread.
+ * <br>
+ * Usage: java engine.SearchBenchmark [depth] [maxThreads]
+ *
+ */
+public class SearchBenchmark {
+
+	private static final long DAY = 24L * 60 * 60 * 1000;	// Time budget in milliseconds, so that only the depth limits the search
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		System.out.printf("%-8s %-8s %-12s %-14s %-12s %s%n", "threads", "depth", "time (ms)", "nodes", "nodes/s", "speed-up");
+		double baseline = 0;
+		for (int threads = 1; threads <= maxThreads; threads++){
+			TranspositionTable table = new TranspositionTable(22);
+			ParallelSearch search = new ParallelSearch(threads, table);
+			Board board = new Board(Board.RED);
+
+			search.findBestMove(board, DAY, Long.MAX_VALUE, depth - 2);	// Warm up the JIT
+			table.clear();
+
+			long start = System.nanoTime();
+			search.findBestMove(board, DAY, Long.MAX_VALUE, depth);
+			long nanos = System.nanoTime() - start;
+			search.shutdown();
+
+			double millis = nanos / 1e6;
+			if (threads == 1) baseline = millis;
+			System.out.printf("%-8d %-8d %-12.1f %-14d %-12.0f %.2f%n", threads, search.getDepth(), millis,
+					search.getNodes(), search.getNodes() / (nanos / 1e9), baseline / millis);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Board;
+import model.GameRecord;
+import model.GameRecordWriter;
+import model.MoveGenerator;
+
+/**
+ * The class SelfPlay plays complete games between two policies without a display, spread
+ * over several threads, e.g. to produce many games for analysis or to check that rule
+ * changes do not shift the results. Only the model classes are used, so no window or
+ * AWT toolkit is needed.
+ * <br>
+ * Red moves first in every game. A side loses when it has fewer than three pieces on the
+ * board and in hand, or no legal move; a game still going after maxPlies is a draw. Game
+ * number n always uses the same random seed, so a run repeats exactly whatever the number
+ * of threads.
+ * <br>
+ * Games can be saved to a game record file (see model.GameRecord), with each policy's
+ * ordinal as its player code.
+ * <br>
+ * Usage: java engine.SelfPlay [games] [threads] [redPolicy] [bluePolicy] [maxPlies] [seed] [recordFile]
+ *
+ */
+public class SelfPlay {
+
+	public static final int DEFAULT_MAX_PLIES = 200;
+
+	/**
+	 * The outcome counts of a batch of games
+	 */
+	public static class Result {
+		private long games, redWins, blueWins, draws, plies, nanos;
+
+		public long getGames(){ return games; }
+		public long getRedWins(){ return redWins; }
+		public long getBlueWins(){ return blueWins; }
+		public long getDraws(){ return draws; }
+
+		/**
+		 * @return total number of moves played over all games
+		 */
+		public long getPlies(){ return plies; }
+
+		/**
+		 * @return wall-clock time the batch took, in nanoseconds
+		 */
+		public long getNanos(){ return nanos; }
+
+		// Counts one finished game; winner is null for a draw
+		private void add(Boolean winner, int length){
+			games++;
+			plies += length;
+			if (winner == null) draws++;
+			else if (winner == Board.RED) redWins++;
+			else blueWins++;
+		}
+
+		private void add(Result other){
+			games += other.games;
+			redWins += other.redWins;
+			blueWins += other.blueWins;
+			draws += other.draws;
+			plies += other.plies;
+		}
+
+		@Override
+		public String toString(){
+			double seconds = nanos / 1e9;
+			return String.format("%d games in %.2f s (%.0f games/s, %.0f moves/s)%n"
+					+ "red wins %d (%.1f%%), blue wins %d (%.1f%%), draws %d (%.1f%%), average length %.1f moves",
+					games, seconds, games / seconds, plies / seconds,
+					redWins, percent(redWins), blueWins, percent(blueWins), draws, percent(draws),
+					games == 0 ? 0.0 : (double) plies / games);
+		}
+
+		private double percent(long count){
+			return games == 0 ? 0.0 : 100.0 * count / games;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		Policy red = args.length > 2 ? Policy.valueOf(args[2].toUpperCase()) : Policy.RANDOM;
+		Policy blue = args.length > 3 ? Policy.valueOf(args[3].toUpperCase()) : Policy.RANDOM;
+		int maxPlies = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_PLIES;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+		System.out.printf("%s (red) vs %s (blue), %d threads%n", red, blue, threads);
+		if (args.length > 6) {
+			try (GameRecordWriter writer = new GameRecordWriter(new File(args[6]))) {
+				System.out.println(run(red, blue, games, threads, maxPlies, seed, writer));
+			}
+		}
+		else System.out.println(run(red, blue, games, threads, maxPlies, seed, null));
+	}
+
+	/**
+	 * Plays a batch of games, each worker taking the next unplayed game until all are done
+	 * @param red policy playing red
+	 * @param blue policy playing blue
+	 * @param games number of games to play
+	 * @param threads number of worker threads
+	 * @param maxPlies number of moves after which a game is a draw
+	 * @param seed seed from which every game's random choices follow
+	 * @param writer where to save every game, or null
+	 * @return outcome counts of all the games
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 * @throws IOException if a game cannot be saved
+	 */
+	public static Result run(final Policy red, final Policy blue, final int games, int threads,
+			final int maxPlies, final long seed, final GameRecordWriter writer) throws InterruptedException, IOException {
+		final AtomicInteger next = new AtomicInteger();
+		Result total = new Result();
+		long start = System.nanoTime();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<Result>> results = new ArrayList<Future<Result>>();
+			for (int i = 0; i < Math.max(1, threads); i++){
+				results.add(pool.submit(new Callable<Result>(){
+					@Override
+					public Result call() throws IOException {
+						Result result = new Result();
+						Random random = new Random();
+						int[] moves = new int[MoveGenerator.MAX_MOVES];
+						GameRecord record = writer == null ? null : new GameRecord();
+						for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement()){
+							long gameSeed = seed * 0x9E3779B97F4A7C15L + game;
+							random.setSeed(gameSeed);
+							Board board = new Board(Board.RED);
+							if (record != null) record.clear(red.ordinal(), blue.ordinal(), Board.RED, gameSeed);
+							int length = play(board, red, blue, maxPlies, random, moves, record);
+							Boolean winner = length < maxPlies ? (Boolean) !board.getTurn() : null;
+							result.add(winner, length);
+							if (record != null) {
+								record.setResult(winner == null ? GameRecord.DRAW : winner == Board.RED ? GameRecord.RED_WIN : GameRecord.BLUE_WIN);
+								writer.write(record);
+							}
+						}
+						return result;
+					}
+				}));
+			}
+			for (Future<Result> result : results) total.add(result.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IllegalStateException("Self-play worker failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		total.nanos = System.nanoTime() - start;
+		return total;
+	}
+
+	/**
+	 * Plays one game to the end. If it ends before maxPlies, the side to move on the
+	 * returned board is the one that lost.
+	 * @param board position to play from; it is played on
+	 * @param red policy playing red
+	 * @param blue policy playing blue
+	 * @param maxPlies number of moves after which the game is stopped
+	 * @param random source of randomness for both policies
+	 * @param moves scratch space of at least MoveGenerator.MAX_MOVES entries
+	 * @param record where to note each move played, or null
+	 * @return number of moves played
+	 */
+	public static int play(Board board, Policy red, Policy blue, int maxPlies, Random random, int[] moves, GameRecord record){
+		for (int ply = 0; ply < maxPlies; ply++){
+			boolean turn = board.getTurn();
+			int position = board.getPosition();
+			int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+			int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+			if (Integer.bitCount(own) + board.getInHand(turn) < 3) return ply;
+
+			int count = MoveGenerator.generate(own, opp, board.getInHand(turn), moves);
+			if (count == 0) return ply;
+			int move = (turn == Board.RED ? red : blue).choose(own, opp, moves, count, random);
+			board.makeMove(move);
+			if (record != null) record.add(move);
+		}
+		return maxPlies;
+	}
+}
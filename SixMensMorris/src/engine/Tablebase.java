@@ -0,0 +1,141 @@
+package engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The class Tablebase answers, for any position of the movement phase (no pieces left in
+ * hand, 3 to 6 pieces per side), whether the side to move wins, loses or draws with
+ * perfect play and in how many plies. The table is written by TablebaseGenerator.
+ * <br>
+ * The file is mapped into memory and probed in place: a probe is one index calculation
+ * and one byte read, nothing is copied onto the heap, and any number of threads may probe
+ * at once.
+ * <br>
+ * Positions are stored from the point of view of the side to move, since both colours
+ * play by the same rules. Each entry is one byte: 0 for a draw, 1 to 127 for a win in
+ * that many plies, and 128 + n for a loss in n plies.
+ *
+ */
+public final class Tablebase {
+
+	public static final int MIN_PIECES = 3;
+	public static final int MAX_PIECES = 6;
+
+	static final int MAGIC = 0x534D4D54;	// "SMMT"
+	static final int VERSION = 1;
+	static final int HEADER = 16;	// Bytes before the first entry
+
+	static final int DRAW = 0;
+	static final int LOSS = 128;
+
+	/**
+	 * Returned by probe() for positions the table does not cover
+	 */
+	public static final int UNKNOWN = -1;
+
+	private static final int[][] BINOMIAL = new int[17][17];
+	private static final int[][] OFFSET = new int[MAX_PIECES + 1][MAX_PIECES + 1];	// First index of each [own][opp] piece count
+	static final int SIZE;	// Number of entries in the table
+
+	static {
+		for (int n = 0; n <= 16; n++){
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= n; k++) BINOMIAL[n][k] = BINOMIAL[n-1][k-1] + BINOMIAL[n-1][k];
+		}
+		int offset = 0;
+		for (int own = MIN_PIECES; own <= MAX_PIECES; own++){
+			for (int opp = MIN_PIECES; opp <= MAX_PIECES; opp++){
+				OFFSET[own][opp] = offset;
+				offset += BINOMIAL[16][own] * BINOMIAL[16 - own][opp];
+			}
+		}
+		SIZE = offset;
+	}
+
+	private final MappedByteBuffer table;
+
+	private Tablebase(MappedByteBuffer table){
+		this.table = table;
+	}
+
+	/**
+	 * Maps a table file into memory
+	 * @param file table written by TablebaseGenerator
+	 * @return tablebase reading from that file
+	 * @throws IOException if the file cannot be read or is not a table
+	 */
+	public static Tablebase open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() != HEADER + (long) SIZE) throw new IOException("Wrong tablebase size: " + file);
+			MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION) throw new IOException("Not a tablebase: " + file);
+			return new Tablebase(table);
+		} finally {
+			raf.close();	// The mapping stays valid after the file is closed
+		}
+	}
+
+	/**
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the opponent
+	 * @return raw entry for the position, or UNKNOWN if it is not covered
+	 */
+	public int probe(int own, int opp){
+		int ownCount = Integer.bitCount(own), oppCount = Integer.bitCount(opp);
+		if (ownCount < MIN_PIECES || ownCount > MAX_PIECES || oppCount < MIN_PIECES || oppCount > MAX_PIECES) return UNKNOWN;
+		return table.get(HEADER + index(own, opp)) & 0xFF;
+	}
+
+	/**
+	 * @param entry value returned by probe()
+	 * @return true if the side to move wins
+	 */
+	public static boolean isWin(int entry){
+		return entry > DRAW && entry < LOSS;
+	}
+
+	/**
+	 * @param entry value returned by probe()
+	 * @return true if the side to move loses
+	 */
+	public static boolean isLoss(int entry){
+		return entry >= LOSS;
+	}
+
+	/**
+	 * @param entry value returned by probe()
+	 * @return plies until the game is decided, 0 for draws
+	 */
+	public static int getDistance(int entry){
+		return entry >= LOSS ? entry - LOSS : entry;
+	}
+
+	/**
+	 * Position of a covered position within the table: the piece counts select a
+	 * block, the own pieces are ranked among all nodes and the opponent's pieces
+	 * among the nodes left free
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the opponent
+	 * @return index of the entry
+	 */
+	static int index(int own, int opp){
+		int ownCount = Integer.bitCount(own), oppCount = Integer.bitCount(opp);
+		int free = ~own & 0xFFFF;
+		int ownRank = 0, oppRank = 0, k = 1;
+		for (int mask = own; mask != 0; mask &= mask - 1, k++){
+			ownRank += BINOMIAL[Integer.numberOfTrailingZeros(mask)][k];
+		}
+		k = 1;
+		for (int mask = opp; mask != 0; mask &= mask - 1, k++){
+			int below = (mask & -mask) - 1;
+			oppRank += BINOMIAL[Integer.bitCount(free & below)][k];
+		}
+		return OFFSET[ownCount][oppCount] + ownRank * BINOMIAL[16 - ownCount][oppCount] + oppRank;
+	}
+}
@@ -0,0 +1,191 @@
+package engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import model.BoardLayout;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * The class TablebaseGenerator solves every movement-phase position by retrograde
+ * analysis and writes the results in the format read by Tablebase.
+ * <br>
+ * Positions are solved in groups of equal total piece count, fewest first. Captures
+ * always lead into a group that is already solved, so within a group only slides need
+ * to be followed backwards: starting from lost positions, every predecessor of a loss
+ * is a win one ply longer, and a position all of whose moves lead to wins for the
+ * opponent is a loss. Positions never reached this way are draws.
+ * <br>
+ * Usage: java engine.TablebaseGenerator [file], by default resources/tablebase.bin
+ *
+ */
+public class TablebaseGenerator {
+
+	private static final int MAX_DISTANCE = Tablebase.LOSS - 1;
+
+	private final byte[] table = new byte[Tablebase.SIZE];
+	private final byte[] remaining = new byte[Tablebase.SIZE];	// Slides whose outcome is not yet known to be a win for the opponent
+	private final byte[] longest = new byte[Tablebase.SIZE];	// Longest opponent win among the moves known so far
+	private final boolean[] escapes = new boolean[Tablebase.SIZE];	// True if a capture leads to a position the opponent does not win
+
+	// Positions to be decided at each distance, packed as own << 16 | opp
+	private final IntList[] wins = new IntList[MAX_DISTANCE + 2];
+	private final IntList[] losses = new IntList[MAX_DISTANCE + 2];
+
+	private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+	public TablebaseGenerator(){
+		for (int i = 0; i < wins.length; i++){
+			wins[i] = new IntList();
+			losses[i] = new IntList();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0] : "resources/tablebase.bin");
+		TablebaseGenerator generator = new TablebaseGenerator();
+
+		long start = System.nanoTime();
+		generator.generate();
+		generator.write(file);
+		System.out.printf("Wrote %d positions to %s in %.1f s%n", Tablebase.SIZE, file, (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Solves every position covered by the table
+	 */
+	public void generate(){
+		for (int total = 2 * Tablebase.MIN_PIECES; total <= 2 * Tablebase.MAX_PIECES; total++){
+			for (int own = Tablebase.MIN_PIECES; own <= Tablebase.MAX_PIECES; own++){
+				int opp = total - own;
+				if (opp >= Tablebase.MIN_PIECES && opp <= Tablebase.MAX_PIECES) initialize(own, opp);
+			}
+			for (int distance = 0; distance <= MAX_DISTANCE; distance++){
+				IntList won = wins[distance], lost = losses[distance];
+				for (int i = 0; i < lost.size; i++) decide(lost.values[i], false, distance);
+				for (int i = 0; i < won.size; i++) decide(won.values[i], true, distance);
+				won.size = 0;
+				lost.size = 0;
+			}
+			if (wins[MAX_DISTANCE + 1].size > 0 || losses[MAX_DISTANCE + 1].size > 0){
+				throw new IllegalStateException("Distance to result exceeds " + MAX_DISTANCE + " plies");
+			}
+		}
+	}
+
+	/**
+	 * Writes the solved table with its header
+	 * @param file destination, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER);
+		header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(Tablebase.MAX_PIECES).putInt(0).flip();
+
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			FileChannel channel = out.getChannel();
+			while (header.hasRemaining()) channel.write(header);
+			ByteBuffer entries = ByteBuffer.wrap(table);
+			while (entries.hasRemaining()) channel.write(entries);
+		} finally {
+			out.close();
+		}
+	}
+
+	// Looks at every position with the given piece counts and queues those whose outcome follows from their captures alone
+	private void initialize(int ownCount, int oppCount){
+		for (int own = (1 << ownCount) - 1; own < 1 << 16; own = nextCombination(own)){
+			int free = ~own & 0xFFFF;
+			for (int opp = free; opp != 0; opp = (opp - 1) & free){
+				if (Integer.bitCount(opp) == oppCount) initialize(own, opp, Tablebase.index(own, opp));
+			}
+		}
+	}
+
+	private void initialize(int own, int opp, int index){
+		int count = MoveGenerator.generate(own, opp, 0, moves);
+		if (count == 0) {
+			losses[0].add(own << 16 | opp);	// Blocked in
+			return;
+		}
+
+		int win = Integer.MAX_VALUE, slides = 0, longestWin = 0;
+		for (int i = 0; i < count; i++){
+			int capture = Move.getCapture(moves[i]);
+			if (capture == Move.NONE) {
+				slides++;
+				continue;
+			}
+			int childOwn = opp & ~(1 << capture);
+			if (Integer.bitCount(childOwn) < Tablebase.MIN_PIECES) {
+				win = 1;	// Opponent is left with too few pieces
+				continue;
+			}
+			int childOpp = own ^ (1 << Move.getFrom(moves[i])) ^ (1 << Move.getTo(moves[i]));
+			int child = table[Tablebase.index(childOwn, childOpp)] & 0xFF;
+			if (Tablebase.isLoss(child)) win = Math.min(win, Tablebase.getDistance(child) + 1);
+			else if (Tablebase.isWin(child)) longestWin = Math.max(longestWin, child);
+			else escapes[index] = true;
+		}
+
+		remaining[index] = (byte) slides;
+		longest[index] = (byte) longestWin;
+		if (win != Integer.MAX_VALUE) escapes[index] = true;	// Can never become a loss
+		if (win != Integer.MAX_VALUE) wins[Math.min(win, MAX_DISTANCE + 1)].add(own << 16 | opp);
+		else if (slides == 0 && !escapes[index]) losses[Math.min(longestWin + 1, MAX_DISTANCE + 1)].add(own << 16 | opp);
+	}
+
+	// Records the outcome of a position and passes it on to the positions that slide into it
+	private void decide(int packed, boolean win, int distance){
+		int own = packed >>> 16, opp = packed & 0xFFFF;
+		int index = Tablebase.index(own, opp);
+		if (table[index] != 0) return;	// Already decided at a shorter distance
+		table[index] = (byte) (win ? distance : Tablebase.LOSS + distance);
+
+		// The opponent just slid one of its pieces to its current node without closing a three-in-a-row
+		int empty = ~(own | opp) & 0xFFFF;
+		for (int pieces = opp; pieces != 0; pieces &= pieces - 1){
+			int to = Integer.numberOfTrailingZeros(pieces);
+			if (BoardLayout.formsMill(opp, to)) continue;
+			for (int sources = BoardLayout.getAdjacent(to) & empty; sources != 0; sources &= sources - 1){
+				int from = Integer.numberOfTrailingZeros(sources);
+				int before = opp ^ (1 << to) ^ (1 << from);
+				int previous = Tablebase.index(before, own);
+				if (table[previous] != 0) continue;
+
+				if (!win) {
+					wins[Math.min(distance + 1, MAX_DISTANCE + 1)].add(before << 16 | own);
+					continue;
+				}
+				longest[previous] = (byte) Math.max(longest[previous], distance);
+				if (--remaining[previous] == 0 && !escapes[previous]) {
+					losses[Math.min(longest[previous] + 1, MAX_DISTANCE + 1)].add(before << 16 | own);
+				}
+			}
+		}
+	}
+
+	// Next larger 16-bit mask with the same number of bits set
+	private static int nextCombination(int mask){
+		int low = mask & -mask;
+		int ripple = mask + low;
+		return ripple | (((mask ^ ripple) >>> 2) / low);
+	}
+
+	// Growable list of ints, so that queued positions are not boxed
+	private static final class IntList {
+		int[] values = new int[1024];
+		int size;
+
+		void add(int value){
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The class TranspositionTable caches search results by Zobrist key (see model.Zobrist)
+ * so that positions reached again are not searched twice.
+ * <br>
+ * Entries live in a single primitive long[] of two longs each: the key XORed with the
+ * data, then the data itself. Threads probe and store without locking; an entry torn by
+ * two threads writing at once no longer matches its key and simply reads as a miss.
+ *
+ */
+public final class TranspositionTable {
+
+	// Bound stored with a score
+	public static final int EXACT = 0;
+	public static final int LOWER = 1;	// Score is at least the stored value (fail high)
+	public static final int UPPER = 2;	// Score is at most the stored value (fail low)
+
+	/**
+	 * Returned by probe() when the position is not in the table
+	 */
+	public static final long MISS = 0L;
+
+	private static final long VALID = 1L << 42;	// Set in every stored entry so that data is never MISS
+
+	private final long[] table;
+	private final int mask;
+
+	/**
+	 * @param sizeLog2 the table holds 2^sizeLog2 entries of 16 bytes each
+	 */
+	public TranspositionTable(int sizeLog2){
+		if (sizeLog2 < 1 || sizeLog2 > 28) throw new IllegalArgumentException("sizeLog2 must be between 1 and 28");
+		this.table = new long[2 << sizeLog2];
+		this.mask = (1 << sizeLog2) - 1;
+	}
+
+	/**
+	 * @param key Zobrist key of the position
+	 * @return packed entry data, or MISS if the position is not stored
+	 */
+	public long probe(long key){
+		int index = ((int) key & mask) << 1;
+		long data = table[index + 1];
+		if ((table[index] ^ data) != key) return MISS;
+		return data;
+	}
+
+	/**
+	 * Stores a search result, keeping an existing entry for the same position
+	 * if it was searched deeper
+	 * @param key Zobrist key of the position
+	 * @param move best move found (see model.Move), or 0
+	 * @param score score of the position for the side to move
+	 * @param depth remaining depth the position was searched to
+	 * @param flag EXACT, LOWER or UPPER
+	 */
+	public void store(long key, int move, int score, int depth, int flag){
+		int index = ((int) key & mask) << 1;
+		long old = table[index + 1];
+		if ((table[index] ^ old) == key && getDepth(old) > depth) return;
+
+		long data = VALID | ((long) flag << 40) | ((long) (depth & 0xFF) << 32)
+				| ((long) (score & 0xFFFF) << 16) | (move & 0xFFFF);
+		table[index] = key ^ data;
+		table[index + 1] = data;
+	}
+
+	/**
+	 * Empties the table, e.g. before a new game
+	 */
+	public void clear(){
+		Arrays.fill(table, 0L);
+	}
+
+	/**
+	 * @param data entry returned by probe()
+	 * @return stored best move
+	 */
+	public static int getMove(long data){
+		return (int) (data & 0xFFFF);
+	}
+
+	/**
+	 * @param data entry returned by probe()
+	 * @return stored score
+	 */
+	public static int getScore(long data){
+		return (short) (data >>> 16);
+	}
+
+	/**
+	 * @param data entry returned by probe()
+	 * @return remaining depth the stored score was searched to
+	 */
+	public static int getDepth(long data){
+		return (int) ((data >>> 32) & 0xFF);
+	}
+
+	/**
+	 * @param data entry returned by probe()
+	 * @return EXACT, LOWER or UPPER
+	 */
+	public static int getFlag(long data){
+		return (int) ((data >>> 40) & 0x3);
+	}
+}
@@ -1,179 +1,405 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 
+/**
+ * The class Board holds the state of a single game. Each Board is independent,
+ * so many games can be played at once as long as each Board is only used by one
+ * thread at a time; the node layout they share lives in BoardLayout and never changes.
+ *
+ */
 public class Board {
 	// Board constants
 	public static final boolean RED = true;
 	public static final boolean BLUE = false;
 	private static final int MAXPIECES = 6;
+	private static final int MOVE_BITS = 0x7FFF;
+	private static final int MOVER_BIT = 0x8000;
+	private static final int[] NO_HISTORY = {};
+	private static final long[] NO_KEYS = {};
 
-	protected static Node[] nodes = new Node[16];
+	// Bitboards: bit n is set when a piece of that colour sits on node n (NodeCreator numbering)
+	private int redMask = 0;
+	private int blueMask = 0;
+	private int collisionMask = 0;	// Nodes that have had more than one piece placed on them
+	private ErrorJournal errors;	// Latest result of validSetup() in this game, created by the first call and never copied
+	private boolean turn;	// Represents whose turn it is
+	private int redInHand = MAXPIECES;	// Pieces red has yet to place
+	private int blueInHand = MAXPIECES;	// Pieces blue has yet to place
 
-	private static Boolean[][] threeInARow = new Boolean[4][2]; //First index indicates which side of the square
-	// has 3-in-a-row, starting with 0 at the top
-	// and numbered clockwise. 2nd index = 0 for inner square
-	// True for Red, False for Blue, null for neither
+	// Three-in-a-rows each side has, kept up to date as pieces are added, moved and removed
+	private int redMills = 0;
+	private int blueMills = 0;
 
-	private static Boolean[][][] position = new Boolean[3][3][2]; //[x][y][z] Holds the color of the piece at this position
-	// null when no piece is at that position
-	private static ArrayList<Piece> pieces = new ArrayList<Piece>();	// Collection of pieces on the board
-	private static int numPieces = 0;
-	private static boolean turn;	// Represents whose turn it is
+	private long key;	// Zobrist key of the position, kept up to date by every change (see Zobrist)
 
-	private static int maxRed; //Max number of red pieces that can be on the board
-	private static int maxBlue; // Max number of blue pieces that can be on the board
+	// Move stack: one record per move played through makeMove(), holding the packed move in the
+	// low 15 bits, the side that played it in bit 15 and the mill counts from before it above;
+	// keys holds the Zobrist key from before it.
+	// Records from ply up to length are moves taken back that can still be redone. The arrays
+	// are only allocated by the first move, so that copies made for searching stay cheap.
+	private int[] history = NO_HISTORY;
+	private long[] keys = NO_KEYS;
+	private int ply;
+	private int length;
 
 
 	// Randomly decide first turn on construction
 	public Board(){
-		Random random = new Random();
-		Board.turn = random.nextBoolean();
-		maxRed = MAXPIECES;
-		maxBlue = MAXPIECES;
+		this.turn = ThreadLocalRandom.current().nextBoolean();
+		key = Zobrist.hash(redMask, blueMask, redInHand, blueInHand, turn);
+	}
+
+	/**
+	 * Starts a game with a chosen side to move, e.g. for repeatable analysis
+	 * @param turn side that moves first
+	 */
+	public Board(boolean turn){
+		this.turn = turn;
+		key = Zobrist.hash(redMask, blueMask, redInHand, blueInHand, turn);
+	}
+
+	/**
+	 * Copies another game so that it can be played on independently, e.g. by another thread.
+	 * Only the position is copied; the copy starts with no moves to undo.
+	 * @param other board to be copied
+	 */
+	public Board(Board other){
+		this.redMask = other.redMask;
+		this.blueMask = other.blueMask;
+		this.collisionMask = other.collisionMask;
+		this.turn = other.turn;
+		this.redInHand = other.redInHand;
+		this.blueInHand = other.blueInHand;
+		this.redMills = other.redMills;
+		this.blueMills = other.blueMills;
+		this.key = other.key;
 	}
 
 	// Method to be called when adding pieces to the board
 	// See how coordinates have been defined in the Piece class
-	public void addPiece(boolean color, int[] coordinate){
-		int x = coordinate[0];
-		int y = coordinate[1];
-		int z = coordinate[2];
-		pieces.add(new Piece(color,coordinate));
-		position[x][y][z] = color;
-		numPieces++;
+	// Returns true if the new piece closes a three-in-a-row
+	public boolean addPiece(boolean color, int[] coordinate){
+		int node = BoardLayout.getNodeIndex(coordinate);
+		occupy(color, node);
+		return BoardLayout.formsMill(color == RED ? redMask : blueMask, node);
 	}
-	public void addPiece(boolean color, int x, int y, int z){
-		int[] coordinate = new int[3];
-		coordinate[0] = x;
-		coordinate[1] = y;
-		coordinate[2] = z;
-		pieces.add(new Piece(color,coordinate));
-		position[x][y][z] = color;
-		numPieces++;		
+	public boolean addPiece(boolean color, int x, int y, int z){
+		int node = BoardLayout.getNodeIndex(x, y, z);
+		occupy(color, node);
+		return BoardLayout.formsMill(color == RED ? redMask : blueMask, node);
 	}
 
-
-	// Method to be called when clicking on pieces on the board
-	public static Piece getPiece(int[] coordinate){		
-		for (int i = 0; i < pieces.size(); i++){			
-			int[] pc = pieces.get(i).getCoordinate();
-			if (pc[0] == coordinate[0] && pc[1] == coordinate[1] && pc[2] == coordinate[2])
-				return pieces.get(i);
+	// Sets the bit for the given node, remembering the node if it was already occupied
+	private void occupy(boolean color, int node){
+		int bit = 1 << node;
+		if (((redMask | blueMask) & bit) != 0) collisionMask |= bit;
+		if (color == RED) {
+			if ((redMask & bit) == 0) {
+				key ^= Zobrist.piece(RED, node);
+				redMills += BoardLayout.countMillsThrough(redMask | bit, node);
+			}
+			redMask |= bit;
+			if (redInHand > 0) key ^= Zobrist.hand(RED, redInHand) ^ Zobrist.hand(RED, --redInHand);
+		}
+		else {
+			if ((blueMask & bit) == 0) {
+				key ^= Zobrist.piece(BLUE, node);
+				blueMills += BoardLayout.countMillsThrough(blueMask | bit, node);
+			}
+			blueMask |= bit;
+			if (blueInHand > 0) key ^= Zobrist.hand(BLUE, blueInHand) ^ Zobrist.hand(BLUE, --blueInHand);
 		}
-		return null; // Return null if there is no piece on that part of the board.
 	}
 
+	// Removes the piece on the given node, as after an opponent's three-in-a-row
+	public void removePiece(int node){
+		if (((redMask | blueMask) & (1 << node)) == 0) return;
+		if ((redMask & (1 << node)) != 0) {
+			key ^= Zobrist.piece(RED, node);
+			redMills -= BoardLayout.countMillsThrough(redMask, node);
+		}
+		if ((blueMask & (1 << node)) != 0) {
+			key ^= Zobrist.piece(BLUE, node);
+			blueMills -= BoardLayout.countMillsThrough(blueMask, node);
+		}
+		redMask &= ~(1 << node);
+		blueMask &= ~(1 << node);
+	}
 
-	// Make sure the board setup is legal
-	public BoardError validSetup(){
-		ArrayList<Piece> errPieces = new ArrayList<Piece>();
+	/**
+	 * Plays a packed move (see Move) for the side to move and passes the turn. The move is
+	 * pushed on the move stack, so that unmakeMove() can take it back.
+	 * @param move packed move, e.g. as produced by MoveGenerator
+	 * @throws IllegalArgumentException if the move's destination is occupied, as such a move could not be taken back
+	 */
+	public void makeMove(int move){
+		if (((redMask | blueMask) & (1 << Move.getTo(move))) != 0) {
+			throw new IllegalArgumentException("Move " + Move.toString(move) + " is to an occupied node");
+		}
+		push(move);
+		length = ply;	// A new move replaces any moves that were taken back
+		play(move);
+	}
 
-		// First make sure no two pieces occupy the same space
-		for (int i = 0; i < pieces.size() - 1; i++){
-			for (int j = i+1; j < pieces.size(); j++){
-				int[] x = new int[3], y = new int[3];
-				for(int k = 0; k < 3; k++){
-					x[k] = pieces.get(i).getCoordinate()[k];
-					y[k] = pieces.get(j).getCoordinate()[k];
-				}
-				if (x[0] == y[0] && x[1] == y[1] && x[2] == y[2]){
-					// If there are pieces in the same spot, add them
-					if (!errPieces.contains(pieces.get(i))) errPieces.add(pieces.get(i));
-					if (!errPieces.contains(pieces.get(j))) errPieces.add(pieces.get(j));
-				}
+	/**
+	 * Takes back the last move played through makeMove() or redoMove(), restoring pieces,
+	 * pieces in hand, mill counts and key from its record without copying the board
+	 * @return the move taken back, or Move.NONE if there is none
+	 */
+	public int unmakeMove(){
+		if (ply == 0) return Move.NONE;
+		int record = history[--ply];
+		int move = record & MOVE_BITS;
+		int toBit = 1 << Move.getTo(move);
+		turn = (record & MOVER_BIT) != 0;	// Not simply flipped, as switchTurn() may have been called since
+		if (turn == RED) {
+			if (Move.isPlacement(move)) {
+				redMask &= ~toBit;
+				redInHand++;
 			}
+			else redMask ^= (1 << Move.getFrom(move)) | toBit;
+			if (Move.getCapture(move) != Move.NONE) blueMask |= 1 << Move.getCapture(move);
 		}
-		if (errPieces.size() > 0) return new BoardError(1,errPieces); // Return error type along with erroneous pieces
-
-		// Count how many three-in-a-rows each side has
-		updateThreeInARow();
-		int red3inARowCount = 0;
-		int blu3inARowCount = 0;
-		for (int i = 0; i < 4; i++){
-			for (int j = 0; j < 2; j++){
-				if (threeInARow[i][j] != null){
-					if (threeInARow[i][j] == RED) {
-						red3inARowCount++;
-					}
-					else if (threeInARow[i][j] == BLUE) {
-						blu3inARowCount++;
-					}
-				}
+		else {
+			if (Move.isPlacement(move)) {
+				blueMask &= ~toBit;
+				blueInHand++;
 			}
+			else blueMask ^= (1 << Move.getFrom(move)) | toBit;
+			if (Move.getCapture(move) != Move.NONE) redMask |= 1 << Move.getCapture(move);
 		}
+		redMills = (record >>> 16) & 0xFF;
+		blueMills = record >>> 24;
+		key = keys[ply];
+		return move;
+	}
 
-		// Update the max number of pieces each side can have respectively
-		maxRed -= blu3inARowCount;
-		maxBlue -= red3inARowCount;
+	/**
+	 * Plays again the move most recently taken back by unmakeMove()
+	 * @return the move played, or Move.NONE if there is none
+	 */
+	public int redoMove(){
+		if (ply == length) return Move.NONE;
+		int move = history[ply] & MOVE_BITS;
+		if (turn != ((history[ply] & MOVER_BIT) != 0)) switchTurn();
+		push(move);
+		play(move);
+		return move;
+	}
 
-		// Make sure neither side exceeds their max amount 
-		int redCnt = 0, bluCnt = 0;
-		for (Piece piece : pieces){
-			if (piece.getColor() == RED) redCnt++;
-			else bluCnt++;
+	/**
+	 * @return number of moves that can be taken back
+	 */
+	public int getPly(){
+		return ply;
+	}
+
+	/**
+	 * @return number of moves taken back that can be played again
+	 */
+	public int getRedoCount(){
+		return length - ply;
+	}
+
+	/**
+	 * @param index 0 for the first move of the game, up to getPly() + getRedoCount() - 1
+	 * @return packed move played at that point of the move stack
+	 */
+	public int getMove(int index){
+		return history[index] & MOVE_BITS;
+	}
+
+	/**
+	 * @param index 0 for the first move of the game, up to getPly() + getRedoCount() - 1
+	 * @return side that played the move at that point of the move stack
+	 */
+	public boolean getMover(int index){
+		return (history[index] & MOVER_BIT) != 0;
+	}
+
+	// Records the move about to be played together with the state it cannot be undone without
+	private void push(int move){
+		if (ply == history.length) {
+			history = Arrays.copyOf(history, Math.max(64, 2 * ply));
+			keys = Arrays.copyOf(keys, history.length);
 		}
-		if (redCnt > maxRed || bluCnt > maxBlue) {
-			if (redCnt > maxRed){
-				for(Piece piece : pieces){
-					if (piece.getColor() == RED) errPieces.add(piece);
-				}
-			}
-			if (bluCnt > maxBlue){
-				for(Piece piece : pieces){
-					if (piece.getColor() == BLUE) errPieces.add(piece);
-				}
-			}
+		history[ply] = (move & MOVE_BITS) | (turn == RED ? MOVER_BIT : 0) | redMills << 16 | blueMills << 24;
+		keys[ply++] = key;
+		if (ply > length) length = ply;
+	}
+
+	private void play(int move){
+		if (Move.isPlacement(move)) occupy(turn, Move.getTo(move));
+		else movePiece(Move.getFrom(move), Move.getTo(move));
+		if (Move.getCapture(move) != Move.NONE) removePiece(Move.getCapture(move));
+		switchTurn();
+	}
+
+	// Moves the piece on node from to the empty node to
+	// Returns true if the moved piece closes a three-in-a-row
+	public boolean movePiece(int from, int to){
+		int fromBit = 1 << from, toBit = 1 << to;
+		Piece piece = getPiece(from);
+		if (piece == null || ((redMask | blueMask) & toBit) != 0) return false;
+
+		key ^= Zobrist.piece(piece.getColor(), from) ^ Zobrist.piece(piece.getColor(), to);
+		if (piece.getColor() == RED) {
+			redMills -= BoardLayout.countMillsThrough(redMask, from);
+			redMask ^= fromBit | toBit;
+			redMills += BoardLayout.countMillsThrough(redMask, to);
+			return BoardLayout.formsMill(redMask, to);
 		}
-		if (errPieces.size() > 0) return new BoardError(2,errPieces);
-
-		return new BoardError(0,null); // In case of no error
-	}
-
-	// Update the existence of three-in-a-rows
-	// Have this return Boolean[][] so that it can be compared to the previous state to see if 
-	// any of the three in rows are new
-	private void updateThreeInARow(){
-		for (int i = 0; i < 3; i+=2){
-			for (int j = 0; j < 2; j++){
-				// Take care of horizontal three-in-rows
-				if (position[i][0][j] != null && position[i][1][j] != null && position[i][2][j] != null){
-					if (position[i][0][j].equals(position[i][1][j]) && position[i][1][j].equals(position[i][2][j])){
-						threeInARow[2-i][j] = new Boolean(position[i][0][j].booleanValue());
-					}
-				}
-				else threeInARow[2-i][j] = null;
-
-				// take care of vertical three-in-rows
-				if (position[0][i][j] != null && position[1][i][j] != null && position[2][i][j] != null){
-					if (position[0][i][j].equals(position[1][i][j]) && position[1][i][j].equals(position[2][i][j])){
-						threeInARow[3-i][j] = new Boolean(position[i][0][j].booleanValue());
-					}
-				}
-				else threeInARow[3-i][j] = null;
-			}
+		blueMills -= BoardLayout.countMillsThrough(blueMask, from);
+		blueMask ^= fromBit | toBit;
+		blueMills += BoardLayout.countMillsThrough(blueMask, to);
+		return BoardLayout.formsMill(blueMask, to);
+	}
+
+
+	// Method to be called when clicking on pieces on the board
+	public Piece getPiece(int[] coordinate){
+		int node = BoardLayout.getNodeIndex(coordinate);
+		if (node < 0) return null;
+		return getPiece(node);
+	}
+
+	// Looks up the piece on a node (NodeCreator numbering) straight from the bitboards
+	public Piece getPiece(int node){
+		int bit = 1 << node;
+		if ((redMask & bit) != 0) return Piece.get(RED, node);
+		if ((blueMask & bit) != 0) return Piece.get(BLUE, node);
+		return null; // Return null if there is no piece on that part of the board.
+	}
+
+
+	// Make sure the board setup is legal, recording the result as this game's active error state
+	public BoardError validSetup(){
+		if (errors == null) errors = new ErrorJournal();
+		return validSetup(errors.record());
+	}
+
+	/**
+	 * Checks the board setup using the bitboards and the running three-in-a-row counts,
+	 * without creating any objects or changing the board
+	 * @param result BoardError to fill in with the outcome, which may be reused between calls
+	 * @return result
+	 */
+	public BoardError validSetup(BoardError result){
+		// First make sure no two pieces occupy the same space
+		if (collisionMask != 0){
+			result.set(1, redMask & collisionMask, blueMask & collisionMask); // Return error type along with erroneous pieces
+			return result;
 		}
+
+		// Each three-in-a-row lowers the max number of pieces the other side can have
+		int maxRed = MAXPIECES - blueMills;
+		int maxBlue = MAXPIECES - redMills;
+
+		// Make sure neither side exceeds their max amount 
+		int redErr = Integer.bitCount(redMask) > maxRed ? redMask : 0;
+		int bluErr = Integer.bitCount(blueMask) > maxBlue ? blueMask : 0;
+		if ((redErr | bluErr) != 0) result.set(2, redErr, bluErr);
+		else result.set(0, 0, 0); // In case of no error
+		return result;
 	}
 
-	public static int getNumPieces(){
-		return numPieces;
+	/**
+	 * @return the result of the latest validSetup() in this game, or null if the setup has not been checked since it started
+	 */
+	public BoardError getCurrentError(){
+		return errors == null ? null : errors.getCurrent();
 	}
 
-	public static void resetBoard(){
-		threeInARow = new Boolean[4][2];
-		position = new Boolean[3][3][2];
-		pieces = new ArrayList<Piece>();
-		numPieces = 0;
+	/**
+	 * @param color side to check
+	 * @return number of pieces that side has yet to place
+	 */
+	public int getInHand(boolean color){
+		return color == RED ? redInHand : blueInHand;
 	}
 
-	public static boolean getTurn(){
+	public int getNumPieces(){
+		return Integer.bitCount(redMask) + Integer.bitCount(blueMask);
+	}
+
+	/**
+	 * Packs the current position into a single int: red occupancy in the
+	 * upper 16 bits and blue occupancy in the lower 16 bits
+	 * @return packed position
+	 */
+	public int getPosition(){
+		return pack(redMask, blueMask);
+	}
+
+	/**
+	 * Replaces the pieces on the board with those of a packed position
+	 * @param position packed position as returned by getPosition()
+	 * @param redHand pieces red has yet to place
+	 * @param blueHand pieces blue has yet to place
+	 */
+	public void setPosition(int position, int redHand, int blueHand){
+		setPosition(position);
+		redInHand = redHand;
+		blueInHand = blueHand;
+		key = Zobrist.hash(redMask, blueMask, redInHand, blueInHand, turn);
+	}
+
+	/**
+	 * Replaces the pieces on the board with those of a packed position
+	 * @param position packed position as returned by getPosition()
+	 */
+	public void setPosition(int position){
+		resetBoard();
+		redMask = getRed(position);
+		blueMask = getBlue(position) & ~redMask;
+		redMills = BoardLayout.countMills(redMask);
+		blueMills = BoardLayout.countMills(blueMask);
+		key = Zobrist.hash(redMask, blueMask, redInHand, blueInHand, turn);
+	}
+
+	public static int pack(int red, int blue){
+		return (red << 16) | (blue & 0xFFFF);
+	}
+
+	public static int getRed(int position){
+		return position >>> 16;
+	}
+
+	public static int getBlue(int position){
+		return position & 0xFFFF;
+	}
+
+	public void resetBoard(){
+		redMask = 0;
+		blueMask = 0;
+		collisionMask = 0;
+		redMills = 0;
+		blueMills = 0;
+		redInHand = MAXPIECES;
+		blueInHand = MAXPIECES;
+		if (errors != null) errors.clear();
+		ply = 0;
+		length = 0;
+		key = Zobrist.hash(redMask, blueMask, redInHand, blueInHand, turn);
+	}
+
+	public boolean getTurn(){
 		return turn;
 	}
 
-	public static void switchTurn(){
+	public void switchTurn(){
 		turn = !turn;
+		key ^= Zobrist.side();
+	}
+
+	/**
+	 * @return Zobrist key of the current position, covering pieces, pieces in hand and side to move
+	 */
+	public long getKey(){
+		return key;
 	}
 
 	/**
@@ -191,11 +417,11 @@ public class Board {
 		board.addPiece(BLUE,2,1,0);
 		board.addPiece(BLUE,0,1,0);
 
-		ArrayList<Piece> pcs = Board.pieces;
 		int[] x = {2,0,1};
-		Piece pc = Board.getPiece(x);
+		Piece pc = board.getPiece(x);
 
 		BoardError be = board.validSetup();
 		System.out.println(be.getType());
+		System.out.println(Integer.toHexString(board.getPosition()));
 	}	
-}
\ No newline at end of file
+}
@@ -4,22 +4,41 @@ import java.util.ArrayList;
 
 /**
  *	The BoardError class wraps relevant error data together after checks have been made, and provides public methods to access this data.
+ *	<br>
+ *	The offending pieces are kept as one node mask per colour; the Piece list is only built if asked for. A BoardError may be
+ *	passed to Board.validSetup(BoardError) again and again, so that validating many positions creates no objects.
  */
 public class BoardError {
 	private int errType; // 0 = no error, 1 = piece collision, 2 = too many pieces
-	private ArrayList<Piece> pieces; // The offending pieces
-	// Shared by all BoardError objects, errorStates effectively passes on all previous data to a newly created BoardError object
-	private static ArrayList<BoardError> errorStates = new ArrayList<BoardError>();
+	private int redNodes; // Nodes holding offending red pieces
+	private int blueNodes; // Nodes holding offending blue pieces
+	private ArrayList<Piece> pieces; // The offending pieces, built from the masks when first needed
 	
 	/**
-	 *	Constructs a BoardError object, which retains information from all previously created BoardError, appends new error data, and allows for error data access.
+	 *	Constructs an empty BoardError object (no error) to be filled in by Board.validSetup(BoardError).
+	 */
+	public BoardError(){
+		this(0, 0, 0);
+	}
+	
+	/**
+	 *	Constructs a BoardError object, which holds the error data of a single check and allows for error data access.
 	 *	@param t Represents an int error value, where 0 is no error, 1 means a piece collision, and 2 means too many pieces.
-	 *	@param pcs Represents an arraylist of pieces that have been determined to cause an error that should be dealt with.
+	 *	@param red Mask of the nodes holding red pieces that cause the error.
+	 *	@param blue Mask of the nodes holding blue pieces that cause the error.
 	 */
-	public BoardError(int t, ArrayList<Piece> pcs){
+	public BoardError(int t, int red, int blue){
+		set(t, red, blue);
+	}
+	
+	/**
+	 *	Replaces the error data with the result of a new check.
+	 */
+	void set(int t, int red, int blue){
 		errType = t;
-		pieces = pcs;
-		errorStates.add(this);
+		redNodes = red;
+		blueNodes = blue;
+		pieces = null;
 	}
 
 	/**
@@ -28,14 +47,25 @@ public class BoardError {
 	public int getType(){ return this.errType; }
 
 	/**
-	 *	@return An arraylist of pieces that have been determined to cause an error that should be dealt with.
+	 *	@return Mask of the nodes holding red pieces that cause the error.
+	 */
+	public int getRedNodes(){ return this.redNodes; }
+
+	/**
+	 *	@return Mask of the nodes holding blue pieces that cause the error.
 	 */
-	public ArrayList<Piece> getPieces() { return this.pieces; }
+	public int getBlueNodes(){ return this.blueNodes; }
 
 	/**
-	 *	@return Returns an array of all BoardError states.
+	 *	@return An arraylist of pieces that have been determined to cause an error that should be dealt with, or null if there is no error.
 	 */
-	public static ArrayList<BoardError> getErrors(){
-		return errorStates;
+	public ArrayList<Piece> getPieces() {
+		if (errType == 0) return null;
+		if (pieces == null){
+			pieces = new ArrayList<Piece>();
+			for (int mask = redNodes; mask != 0; mask &= mask - 1) pieces.add(Piece.get(Board.RED, Integer.numberOfTrailingZeros(mask)));
+			for (int mask = blueNodes; mask != 0; mask &= mask - 1) pieces.add(Piece.get(Board.BLUE, Integer.numberOfTrailingZeros(mask)));
+		}
+		return this.pieces;
 	}
 }
@@ -1,41 +1,247 @@
 package model;
 
 import java.awt.Point;
+import java.util.Arrays;
 
-public class BoardLayout extends Board{
+/**
+ * The class BoardLayout describes the shape of the board shared by every game:
+ * the nodes, their connections and the possible three-in-a-rows.
+ * <br>
+ * The layout is built once from NodeCreator's node positions while this class is
+ * initialized and is never changed afterwards, so it can be read from any number of threads.
+ *
+ */
+public final class BoardLayout {
+	
+	private static final Node[] NODES = new Node[16];
+	
+	// Conversion between Piece coordinates {x,y,z} and node indices, filled in as NodeCreator places the nodes
+	private static final int[][][] NODE_INDEX = new int[3][3][2];	// -1 where there is no node
+	private static final int[][] COORDS = new int[16][];
+	
+	/**
+	 * Number of possible three-in-a-rows, see getMill()
+	 */
+	public static final int MILL_COUNT = 8;
+	
+	// The possible three-in-a-rows as bitmasks over the 16 nodes: each side of the
+	// outer square clockwise from the top, then each side of the inner square
+	private static final int[] MILLS = new int[MILL_COUNT];
+	
+	// For each node, the mills from MILLS that pass through it (two for corners, one for midpoints)
+	private static final int[][] NODE_MILLS = new int[16][];
+	
+	// For each node, bitmask of the nodes it is connected to
+	private static final int[] ADJACENT = new int[16];
+	
+	/**
+	 * Clicks closer than this many pixels to a node's centre select that node
+	 */
+	public static final int HIT_RADIUS = 40;
+	
+	// Hit-test grid over the window: each cell holds a bitmask of the nodes whose hit circle overlaps it
+	private static final int CELL_SHIFT = 4;	// Cells are 16x16 pixels
+	private static int gridX, gridY;	// Window position of the grid's top left corner
+	private static int gridWidth, gridHeight;	// Size of the grid, in cells
+	private static int[] grid;
+	
+	static {
+		for (int[][] row : NODE_INDEX) for (int[] column : row) Arrays.fill(column, -1);
+		int[] count = new int[16];
+		for (int i = 0; i < MILL_COUNT; i++){
+			int start = (i / 4) * 8, side = i % 4;
+			MILLS[i] = (1 << (start + 2*side)) | (1 << (start + 2*side + 1)) | (1 << (start + (2*side + 2) % 8));
+			for (int node = 0; node < 16; node++) if ((MILLS[i] & (1 << node)) != 0) count[node]++;
+		}
+		for (int node = 0; node < 16; node++){
+			NODE_MILLS[node] = new int[count[node]];
+			for (int i = 0, j = 0; i < MILL_COUNT; i++) if ((MILLS[i] & (1 << node)) != 0) NODE_MILLS[node][j++] = MILLS[i];
+		}
+		NodeCreator.createNodes();
+		NodeCreator.defineConnections();
+		buildGrid();	// Needs every node in place
+	}
+	
+	// Sorts the nodes' hit circles into the cells of the hit-test grid
+	private static void buildGrid(){
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (Node node : NODES){
+			minX = Math.min(minX, node.getX());
+			minY = Math.min(minY, node.getY());
+			maxX = Math.max(maxX, node.getX());
+			maxY = Math.max(maxY, node.getY());
+		}
+		gridX = minX - HIT_RADIUS;
+		gridY = minY - HIT_RADIUS;
+		gridWidth = ((maxX + HIT_RADIUS - gridX) >> CELL_SHIFT) + 1;
+		gridHeight = ((maxY + HIT_RADIUS - gridY) >> CELL_SHIFT) + 1;
+		grid = new int[gridWidth * gridHeight];
+		
+		int size = 1 << CELL_SHIFT;
+		for (int index = 0; index < 16; index++){
+			int x = NODES[index].getX(), y = NODES[index].getY();
+			for (int row = 0; row < gridHeight; row++){
+				for (int column = 0; column < gridWidth; column++){
+					// Closest pixel of the cell to the node's centre
+					int left = gridX + (column << CELL_SHIFT), top = gridY + (row << CELL_SHIFT);
+					int dx = x - Math.max(left, Math.min(x, left + size - 1));
+					int dy = y - Math.max(top, Math.min(y, top + size - 1));
+					if (dx*dx + dy*dy < HIT_RADIUS*HIT_RADIUS) grid[row * gridWidth + column] |= 1 << index;
+				}
+			}
+		}
+	}
+	
 	
 	private BoardLayout(){};
 	
-	public static void setNode(int index, int x, int y, int[] coords){
-		Board.nodes[index] = new Node(index, x, y, coords);
+	static void setNode(int index, int x, int y, int[] coords){
+		NODES[index] = new Node(index, x, y, coords);
+		COORDS[index] = coords.clone();
+		NODE_INDEX[coords[0]][coords[1]][coords[2]] = index;
 	}
 	
 	public static int getNodeX(int index){
-		return Board.nodes[index].getX();
+		return NODES[index].getX();
 	}
 	
 	public static int getNodeY(int index){
-		return Board.nodes[index].getY();
+		return NODES[index].getY();
 	}
 	
+	/**
+	 * @param index node index
+	 * @return copy of the node's position with respect to Piece coordinate system
+	 */
 	public static int[] getNodePosition(int index){
-		return Board.nodes[index].getCoords();
+		return COORDS[index].clone();
+	}
+	
+	/**
+	 * @param index node index
+	 * @param axis 0 for x (row), 1 for y (column), 2 for z (inner/outer)
+	 * @return one Piece coordinate of the node, without copying the whole position
+	 */
+	public static int getNodeCoordinate(int index, int axis){
+		return COORDS[index][axis];
+	}
+	
+	/**
+	 * @param coords position on the board with respect to Piece coordinate system
+	 * @return index of the node at those coordinates (NodeCreator numbering), or -1 if there is none
+	 */
+	public static int getNodeIndex(int[] coords){
+		return NODE_INDEX[coords[0]][coords[1]][coords[2]];
+	}
+	
+	/**
+	 * @param x row of the board {0=bottom,1=middle,2=top}
+	 * @param y column of the board {0=left,1=middle,2=right}
+	 * @param z inner/outer frame of the board {0=inner,1=outer}
+	 * @return index of the node at those coordinates (NodeCreator numbering), or -1 if there is none
+	 */
+	public static int getNodeIndex(int x, int y, int z){
+		return NODE_INDEX[x][y][z];
+	}
+	
+	/**
+	 * Checks only the mills running through the given node
+	 * @param mask occupancy of one colour, including a piece on node
+	 * @param node index of the node that was just placed or moved to
+	 * @return true if the piece on node completes a three-in-a-row
+	 */
+	public static boolean formsMill(int mask, int node){
+		int[] lines = NODE_MILLS[node];
+		for (int i = 0; i < lines.length; i++){
+			if ((mask & lines[i]) == lines[i]) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @param mask occupancy of one colour
+	 * @param node index of a node
+	 * @return number of complete three-in-a-rows within the mask that pass through the node
+	 */
+	public static int countMillsThrough(int mask, int node){
+		int[] lines = NODE_MILLS[node];
+		int count = 0;
+		for (int i = 0; i < lines.length; i++){
+			if ((mask & lines[i]) == lines[i]) count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * @param mask occupancy of one colour
+	 * @return number of complete three-in-a-rows within the mask
+	 */
+	public static int countMills(int mask){
+		int count = 0;
+		for (int i = 0; i < MILL_COUNT; i++){
+			if ((mask & MILLS[i]) == MILLS[i]) count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * @param index 0 to MILL_COUNT - 1: each side of the outer square clockwise from the top,
+	 * then each side of the inner square
+	 * @return bitmask over the 16 nodes of that three-in-a-row
+	 */
+	public static int getMill(int index){
+		return MILLS[index];
 	}
 	
 	public static boolean isConnected(int first, int second){
-		return Node.isConnected(Board.nodes[first], Board.nodes[second]);
+		return Node.isConnected(NODES[first], NODES[second]);
 	}
 	
-	public static void addConnection(int x, int y){
-		addConnection(Board.nodes[x], Board.nodes[y], x, y);
+	static void addConnection(int x, int y){
+		addConnection(NODES[x], NODES[y], x, y);
 	}	
 	
 	private static void addConnection(Node first, Node second, int x, int y){
 		first.addConnection(y);
 		second.addConnection(x);
+		ADJACENT[x] |= 1 << y;
+		ADJACENT[y] |= 1 << x;
+	}
+	
+	/**
+	 * @param index node index
+	 * @return bitmask of the nodes connected to the given node
+	 */
+	public static int getAdjacent(int index){
+		return ADJACENT[index];
+	}
+	
+	/**
+	 * Finds the node under a point in constant time, using whole numbers only
+	 * @param x horizontal window position, in pixels
+	 * @param y vertical window position, in pixels
+	 * @return index of the node within HIT_RADIUS of the point, or -1 if there is none
+	 */
+	public static int nodeAt(int x, int y){
+		int column = (x - gridX) >> CELL_SHIFT, row = (y - gridY) >> CELL_SHIFT;
+		if (x < gridX || y < gridY || column >= gridWidth || row >= gridHeight) return -1;
+		for (int nodes = grid[row * gridWidth + column]; nodes != 0; nodes &= nodes - 1){
+			int index = Integer.numberOfTrailingZeros(nodes);
+			int dx = NODES[index].getX() - x, dy = NODES[index].getY() - y;
+			if (dx*dx + dy*dy < HIT_RADIUS*HIT_RADIUS) return index;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param p window position, in pixels
+	 * @return index of the node within HIT_RADIUS of the point, or -1 if there is none
+	 */
+	public static int nodeAt(Point p){
+		return nodeAt(p.x, p.y);
 	}
 	
 	public static int distanceTo(int index, Point p){
-		return (int) Math.sqrt(Math.pow(Board.nodes[index].getX() - p.getX(), 2) + Math.pow(Board.nodes[index].getY() - p.getY(), 2));
+		return (int) Math.sqrt(Math.pow(NODES[index].getX() - p.getX(), 2) + Math.pow(NODES[index].getY() - p.getY(), 2));
 	}	
 }
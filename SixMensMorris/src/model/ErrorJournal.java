@@ -0,0 +1,35 @@
+package model;
+
+/**
+ *	The ErrorJournal class keeps the current validation result of one game in a single reusable BoardError slot.
+ *	<br>
+ *	Recording a new result fills in the same slot again, so the journal never grows no matter how often a setup is checked,
+ *	and the result it holds is always the one in effect.
+ */
+public class ErrorJournal {
+	private final BoardError current = new BoardError();
+	private boolean recorded = false; // Whether a result has been recorded since the last clear
+
+	/**
+	 *	Claims the slot for a new result, which becomes the current one once filled in.
+	 *	@return The BoardError to fill in; the next result is written to it again, so it should not be kept.
+	 */
+	BoardError record(){
+		recorded = true;
+		return current;
+	}
+
+	/**
+	 *	@return The latest validation result, or null if nothing has been checked since the last clear.
+	 */
+	public BoardError getCurrent(){
+		return recorded ? current : null;
+	}
+
+	/**
+	 *	Forgets the current result, e.g. when a new game starts.
+	 */
+	public void clear(){
+		recorded = false;
+	}
+}
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * The class Features counts the features of a position that an evaluation weighs, for
+ * one side at a time: mobility (free nodes connected to each piece), open two-in-a-rows
+ * (three-in-a-row lines of BoardLayout holding two of the side's pieces and a free node) and
+ * blocked pieces (pieces with no free node connected to them).
+ *
+ */
+public final class Features {
+
+	public static final int ALL_NODES = 0xFFFF;
+	public static final int ALL_LINES = (1 << BoardLayout.MILL_COUNT) - 1;
+
+	private Features(){
+	}
+
+	/**
+	 * @param pieces mask of the pieces to count
+	 * @param empty mask of the free nodes
+	 * @return number of free nodes connected to each of the pieces, added up
+	 */
+	public static int mobility(int pieces, int empty){
+		int count = 0;
+		for (; pieces != 0; pieces &= pieces - 1){
+			count += Integer.bitCount(BoardLayout.getAdjacent(Integer.numberOfTrailingZeros(pieces)) & empty);
+		}
+		return count;
+	}
+
+	/**
+	 * @param pieces mask of the pieces to count
+	 * @param empty mask of the free nodes
+	 * @return number of the pieces with no free node connected to them
+	 */
+	public static int blocked(int pieces, int empty){
+		int count = 0;
+		for (; pieces != 0; pieces &= pieces - 1){
+			if ((BoardLayout.getAdjacent(Integer.numberOfTrailingZeros(pieces)) & empty) == 0) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @param own occupancy of the side to count for
+	 * @param opp occupancy of the other side
+	 * @param lines bitmask of the indices, as passed to BoardLayout.getMill(), of the lines to look at
+	 * @return number of those lines holding two of own's pieces and a free node
+	 */
+	public static int openTwos(int own, int opp, int lines){
+		int count = 0;
+		for (; lines != 0; lines &= lines - 1){
+			int line = BoardLayout.getMill(Integer.numberOfTrailingZeros(lines));
+			if ((opp & line) == 0 && Integer.bitCount(own & line) == 2) count++;
+		}
+		return count;
+	}
+}
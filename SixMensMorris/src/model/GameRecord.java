@@ -0,0 +1,191 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The class GameRecord holds one game from the empty board: who played each side, who moved
+ * first, the seed of any random choices, the result and every move in order. Records are
+ * stored by GameRecordWriter and read back by GameRecordReader.
+ * <br>
+ * In a file each move takes one byte: its position in the MoveGenerator list of the position
+ * it was played in, which is below MoveGenerator.MAX_MOVES. The moves are turned back into
+ * packed moves (see Move) by playing the game through again while reading.
+ * <br>
+ * A record may be reused for game after game with clear(), so that reading or writing many
+ * games creates no objects.
+ *
+ */
+public class GameRecord {
+
+	// Results
+	public static final int DRAW = 0;
+	public static final int RED_WIN = 1;
+	public static final int BLUE_WIN = 2;
+	public static final int UNFINISHED = 3;
+
+	/**
+	 * Player code for a person at the board; programs use their own codes from 0 up
+	 */
+	public static final int HUMAN = 255;
+
+	private static final int MAXPIECES = 6;
+
+	// File layout: MAGIC and VERSION, then for each game a GAME_HEADER followed by one byte per move
+	static final int MAGIC = 0x534D4D52;	// "SMMR"
+	static final int VERSION = 1;
+	static final int FILE_HEADER = 8;
+	static final int GAME_HEADER = 13;	// Flags (first turn and result), red player, blue player, seed, number of moves
+	static final int MAX_LENGTH = 0xFFFF;	// Most moves a stored game may have
+
+	private int redPlayer = HUMAN;
+	private int bluePlayer = HUMAN;
+	private boolean firstTurn = Board.RED;
+	private int result = UNFINISHED;
+	private long seed;
+	private int[] moves = new int[64];
+	private int length;
+	private final Replay replay = new Replay();	// Scratch position for encoding and decoding
+
+	/**
+	 * Starts an empty record
+	 */
+	public GameRecord(){
+	}
+
+	/**
+	 * Forgets the moves and resets the header for a new game
+	 * @param redPlayer code of the player on red, 0 to 255
+	 * @param bluePlayer code of the player on blue, 0 to 255
+	 * @param firstTurn side that moves first
+	 * @param seed seed of any random choices made in the game
+	 */
+	public void clear(int redPlayer, int bluePlayer, boolean firstTurn, long seed){
+		if ((redPlayer & ~0xFF) != 0 || (bluePlayer & ~0xFF) != 0) throw new IllegalArgumentException("Player codes must fit in one byte");
+		this.redPlayer = redPlayer;
+		this.bluePlayer = bluePlayer;
+		this.firstTurn = firstTurn;
+		this.seed = seed;
+		this.result = UNFINISHED;
+		this.length = 0;
+	}
+
+	/**
+	 * @param move packed move (see Move) played next
+	 */
+	public void add(int move){
+		if (length == moves.length) moves = Arrays.copyOf(moves, 2 * length);
+		moves[length++] = move;
+	}
+
+	/**
+	 * @param result DRAW, RED_WIN, BLUE_WIN or UNFINISHED
+	 */
+	public void setResult(int result){
+		if (result < DRAW || result > UNFINISHED) throw new IllegalArgumentException("Unknown result " + result);
+		this.result = result;
+	}
+
+	public int getRedPlayer(){ return redPlayer; }
+	public int getBluePlayer(){ return bluePlayer; }
+	public boolean getFirstTurn(){ return firstTurn; }
+	public int getResult(){ return result; }
+	public long getSeed(){ return seed; }
+
+	/**
+	 * @return number of moves played
+	 */
+	public int getLength(){ return length; }
+
+	/**
+	 * @param ply index of a move, from 0
+	 * @return packed move (see Move) played at that point
+	 */
+	public int getMove(int ply){
+		if (ply < 0 || ply >= length) throw new IndexOutOfBoundsException("No move " + ply + " of " + length);
+		return moves[ply];
+	}
+
+	/**
+	 * @param plies number of moves to play, at most getLength()
+	 * @return new board showing the game after that many moves
+	 */
+	public Board toBoard(int plies){
+		Board board = new Board(firstTurn);
+		for (int i = 0; i < plies; i++) board.makeMove(getMove(i));
+		return board;
+	}
+
+	/**
+	 * Writes each move as its position in the MoveGenerator list, playing the game through
+	 * @param out array of at least getLength() bytes
+	 * @throws IllegalStateException if a move is not legal where it was played
+	 */
+	void encode(byte[] out){
+		replay.reset();
+		for (int i = 0; i < length; i++){
+			int count = replay.generate();
+			int index = 0;
+			while (index < count && replay.list[index] != moves[i]) index++;
+			if (index == count) throw new IllegalStateException("Move " + Move.toString(moves[i]) + " at ply " + i + " is not legal");
+			out[i] = (byte) index;
+			replay.play(moves[i]);
+		}
+	}
+
+	/**
+	 * Replaces the header and moves with those read from a file
+	 * @param redPlayer code of the player on red
+	 * @param bluePlayer code of the player on blue
+	 * @param firstTurn side that moved first
+	 * @param result DRAW, RED_WIN, BLUE_WIN or UNFINISHED
+	 * @param seed seed of any random choices made in the game
+	 * @param in one byte per move, as written by encode()
+	 * @param plies number of moves
+	 * @throws IllegalStateException if a move index is out of range, i.e. the data is corrupt
+	 */
+	void decode(int redPlayer, int bluePlayer, boolean firstTurn, int result, long seed, byte[] in, int plies){
+		clear(redPlayer, bluePlayer, firstTurn, seed);
+		setResult(result);
+		replay.reset();
+		for (int i = 0; i < plies; i++){
+			int count = replay.generate();
+			int index = in[i] & 0xFF;
+			if (index >= count) throw new IllegalStateException("Move index " + index + " at ply " + i + " is out of range");
+			add(replay.list[index]);
+			replay.play(replay.list[index]);
+		}
+	}
+
+	/**
+	 * Position of a game being played through, from the side to move's point of view
+	 */
+	private static class Replay {
+		final int[] list = new int[MoveGenerator.MAX_MOVES];
+		int own, opp, ownHand, oppHand;
+
+		// Back to the empty board; both colours play by the same rules, so the colour to move does not matter
+		void reset(){
+			own = 0;
+			opp = 0;
+			ownHand = MAXPIECES;
+			oppHand = MAXPIECES;
+		}
+
+		int generate(){
+			return MoveGenerator.generate(own, opp, ownHand, list);
+		}
+
+		void play(int move){
+			int to = Move.getTo(move), from = Move.getFrom(move), capture = Move.getCapture(move);
+			if (from == Move.NONE){
+				own |= 1 << to;
+				ownHand--;
+			} else {
+				own ^= (1 << from) | (1 << to);
+			}
+			if (capture != Move.NONE) opp &= ~(1 << capture);
+			int swap = own; own = opp; opp = swap;
+			swap = ownHand; ownHand = oppHand; oppHand = swap;
+		}
+	}
+}
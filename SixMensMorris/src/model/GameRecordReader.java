@@ -0,0 +1,85 @@
+package model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The class GameRecordReader reads the games of a game record file (see GameRecord) one after
+ * another, filling large blocks of a direct buffer from the file channel at a time. Each game
+ * is read into a GameRecord supplied by the caller, which may be the same one every time.
+ *
+ */
+public class GameRecordReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 17;	// Holds the longest possible game
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final byte[] moves = new byte[GameRecord.MAX_LENGTH];
+
+	/**
+	 * @param file game record file to read
+	 * @throws IOException if the file cannot be opened or is not a game record file
+	 */
+	@SuppressWarnings("resource")	// The channel closes the file
+	public GameRecordReader(File file) throws IOException {
+		channel = new RandomAccessFile(file, "r").getChannel();
+		buffer.flip();	// Start empty
+		try {
+			if (!fill(GameRecord.FILE_HEADER) || buffer.getInt() != GameRecord.MAGIC || buffer.getInt() != GameRecord.VERSION)
+				throw new IOException("Not a game record file: " + file);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param record record to fill in with the next game
+	 * @return false if there are no more games, in which case record is unchanged
+	 * @throws IOException if the file cannot be read, ends part way through a game or holds an illegal move
+	 */
+	public boolean next(GameRecord record) throws IOException {
+		if (!fill(GameRecord.GAME_HEADER)) {
+			if (buffer.hasRemaining()) throw new EOFException("Game record file ends part way through a game");
+			return false;
+		}
+		int flags = buffer.get();
+		int redPlayer = buffer.get() & 0xFF;
+		int bluePlayer = buffer.get() & 0xFF;
+		long seed = buffer.getLong();
+		int length = buffer.getShort() & 0xFFFF;
+		if (!fill(length)) throw new EOFException("Game record file ends part way through a game");
+		buffer.get(moves, 0, length);
+		try {
+			record.decode(redPlayer, bluePlayer, (flags & 1) != 0, (flags >> 1) & 3, seed, moves, length);
+		} catch (IllegalStateException e) {
+			throw new IOException("Corrupt game record: " + e.getMessage(), e);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Reads from the file until at least n bytes are buffered; false if the file ends first
+	private boolean fill(int n) throws IOException {
+		if (buffer.remaining() >= n) return true;
+		buffer.compact();
+		try {
+			while (buffer.position() < n) {
+				if (channel.read(buffer) < 0) return false;
+			}
+			return true;
+		} finally {
+			buffer.flip();
+		}
+	}
+}
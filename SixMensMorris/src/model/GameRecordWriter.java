@@ -0,0 +1,97 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The class GameRecordWriter appends games to a game record file (see GameRecord), creating
+ * the file if it does not exist yet. Games are gathered in a direct buffer and handed to the
+ * file channel in large blocks, so millions of games can be written to one file cheaply.
+ * <br>
+ * Writes from several threads are allowed; each game is written whole.
+ *
+ */
+public class GameRecordWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 17;	// Holds the longest possible game
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private byte[] moves = new byte[256];
+
+	/**
+	 * @param file game record file to add games to
+	 * @throws IOException if the file cannot be opened or is not a game record file
+	 */
+	@SuppressWarnings("resource")	// The channel closes the file
+	public GameRecordWriter(File file) throws IOException {
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(GameRecord.FILE_HEADER);
+			if (channel.size() == 0) {
+				header.putInt(GameRecord.MAGIC).putInt(GameRecord.VERSION).flip();
+				while (header.hasRemaining()) channel.write(header);
+			} else {
+				while (header.hasRemaining() && channel.read(header) >= 0) {}
+				header.flip();
+				if (header.remaining() < GameRecord.FILE_HEADER || header.getInt() != GameRecord.MAGIC || header.getInt() != GameRecord.VERSION)
+					throw new IOException("Not a game record file: " + file);
+			}
+			channel.position(channel.size());
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param record game to add after those already written
+	 * @throws IOException if the file cannot be written
+	 * @throws IllegalArgumentException if the game is too long or has an illegal move
+	 */
+	public synchronized void write(GameRecord record) throws IOException {
+		int length = record.getLength();
+		if (length > GameRecord.MAX_LENGTH) throw new IllegalArgumentException("Game of " + length + " moves is too long to store");
+		if (moves.length < length) moves = new byte[Math.max(length, 2 * moves.length)];
+		try {
+			record.encode(moves);
+		} catch (IllegalStateException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+
+		if (buffer.remaining() < GameRecord.GAME_HEADER + length) drain();
+		int flags = (record.getFirstTurn() == Board.RED ? 1 : 0) | record.getResult() << 1;
+		buffer.put((byte) flags).put((byte) record.getRedPlayer()).put((byte) record.getBluePlayer())
+			.putLong(record.getSeed()).putShort((short) length).put(moves, 0, length);
+	}
+
+	/**
+	 * Hands every buffered game to the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		drain();
+	}
+
+	/**
+	 * Writes any buffered games and closes the file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+}
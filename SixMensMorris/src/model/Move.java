@@ -0,0 +1,99 @@
+package model;
+
+/**
+ * The class Move contains static methods to pack a move into a single int
+ * so that moves can be stored in primitive arrays without creating objects
+ * <br>
+ * Bits 0-3 hold the destination node, bits 4-7 the node the piece moved from
+ * and bits 8-11 the node of a captured piece (NodeCreator numbering).
+ * Bit 12 is set for slides and bit 13 for captures.
+ *
+ */
+public final class Move {
+
+	public static final int NONE = -1;
+
+	private static final int SLIDE = 1 << 12;
+	private static final int CAPTURE = 1 << 13;
+
+	private Move(){}
+
+	/**
+	 * @param to node the piece is placed on
+	 * @return packed placement
+	 */
+	public static int place(int to){
+		return to;
+	}
+
+	/**
+	 * @param from node the piece is moved from
+	 * @param to adjacent empty node the piece is moved to
+	 * @return packed slide
+	 */
+	public static int slide(int from, int to){
+		return SLIDE | (from << 4) | to;
+	}
+
+	/**
+	 * @param move packed placement or slide that closes a three-in-a-row
+	 * @param capture node of the opponent piece to be removed
+	 * @return packed move including the capture
+	 */
+	public static int withCapture(int move, int capture){
+		return (move & ~(CAPTURE | 0xF00)) | CAPTURE | (capture << 8);
+	}
+
+	/**
+	 * @param move packed move
+	 * @return destination node of the moving piece
+	 */
+	public static int getTo(int move){
+		return move & 0xF;
+	}
+
+	/**
+	 * @param move packed move
+	 * @return node the piece moved from, or NONE for a placement
+	 */
+	public static int getFrom(int move){
+		return (move & SLIDE) != 0 ? (move >> 4) & 0xF : NONE;
+	}
+
+	/**
+	 * @param move packed move
+	 * @return node of the captured piece, or NONE if nothing was captured
+	 */
+	public static int getCapture(int move){
+		return (move & CAPTURE) != 0 ? (move >> 8) & 0xF : NONE;
+	}
+
+	/**
+	 * @param move packed move
+	 * @return true if the move places a piece from hand
+	 */
+	public static boolean isPlacement(int move){
+		return (move & SLIDE) == 0;
+	}
+
+	/**
+	 * @param move packed move
+	 * @return mask of every node whose contents the move changes
+	 */
+	public static int getChangedNodes(int move){
+		int nodes = 1 << getTo(move);
+		if ((move & SLIDE) != 0) nodes |= 1 << getFrom(move);
+		if ((move & CAPTURE) != 0) nodes |= 1 << getCapture(move);
+		return nodes;
+	}
+
+	/**
+	 * @param move packed move
+	 * @return readable form of the move, e.g. "3-4x9"
+	 */
+	public static String toString(int move){
+		String s = isPlacement(move) ? "" + getTo(move) : getFrom(move) + "-" + getTo(move);
+		if (getCapture(move) != NONE) s += "x" + getCapture(move);
+		return s;
+	}
+}
@@ -0,0 +1,93 @@
+package model;
+
+/**
+ * The class MoveGenerator lists every legal move for the side to move:
+ * placements while pieces remain in hand, slides along Node connections
+ * once they do not, and the captures that follow a closed three-in-a-row.
+ * <br>
+ * Moves are written as packed ints (see Move) into a buffer supplied by the
+ * caller, so generating moves never creates objects.
+ *
+ */
+public final class MoveGenerator {
+
+	/**
+	 * Size of a move buffer large enough for any position
+	 */
+	public static final int MAX_MOVES = 256;
+
+	private MoveGenerator(){}
+
+	/**
+	 * Generates the legal moves for the side to move on the given board
+	 * @param board position to generate moves for
+	 * @param moves buffer of at least MAX_MOVES entries to be filled with packed moves
+	 * @return number of moves written to the buffer
+	 */
+	public static int generate(Board board, int[] moves){
+		int position = board.getPosition();
+		boolean turn = board.getTurn();
+		int own = turn == Board.RED ? Board.getRed(position) : Board.getBlue(position);
+		int opp = turn == Board.RED ? Board.getBlue(position) : Board.getRed(position);
+		return generate(own, opp, board.getInHand(turn), moves);
+	}
+
+	/**
+	 * Generates the legal moves for a side from its occupancy masks
+	 * @param own occupancy of the side to move
+	 * @param opp occupancy of the opponent
+	 * @param inHand pieces the side to move still has to place
+	 * @param moves buffer of at least MAX_MOVES entries to be filled with packed moves
+	 * @return number of moves written to the buffer
+	 */
+	public static int generate(int own, int opp, int inHand, int[] moves){
+		int count = 0;
+		int empty = ~(own | opp) & 0xFFFF;
+		int capturable = getCapturable(opp);
+
+		if (inHand > 0){
+			for (int targets = empty; targets != 0; targets &= targets - 1){
+				int to = Integer.numberOfTrailingZeros(targets);
+				count = add(Move.place(to), own | (1 << to), to, capturable, moves, count);
+			}
+			return count;
+		}
+
+		for (int pieces = own; pieces != 0; pieces &= pieces - 1){
+			int from = Integer.numberOfTrailingZeros(pieces);
+			for (int targets = BoardLayout.getAdjacent(from) & empty; targets != 0; targets &= targets - 1){
+				int to = Integer.numberOfTrailingZeros(targets);
+				count = add(Move.slide(from, to), own ^ (1 << from) ^ (1 << to), to, capturable, moves, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Opponent pieces outside of a three-in-a-row may be captured, unless
+	 * every one of them is part of one
+	 * @param opp occupancy of the side losing a piece
+	 * @return mask of the pieces that may be captured
+	 */
+	public static int getCapturable(int opp){
+		int inMills = 0;
+		for (int i = 0; i < BoardLayout.MILL_COUNT; i++){
+			int mill = BoardLayout.getMill(i);
+			if ((opp & mill) == mill) inMills |= mill;
+		}
+		int free = opp & ~inMills;
+		return free != 0 ? free : opp;
+	}
+
+	// Writes the move, or one move per possible capture if it closes a three-in-a-row
+	private static int add(int move, int own, int to, int capturable, int[] moves, int count){
+		if (capturable == 0 || !BoardLayout.formsMill(own, to)){
+			moves[count++] = move;
+			return count;
+		}
+		for (; capturable != 0; capturable &= capturable - 1){
+			moves[count++] = Move.withCapture(move, Integer.numberOfTrailingZeros(capturable));
+		}
+		return count;
+	}
+}
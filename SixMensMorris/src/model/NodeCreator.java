@@ -28,16 +28,14 @@ public class NodeCreator {
 
 		START_WIDTH = (WINDOW_WIDTH - BOARD_SIZE)/2 - WINDOW_WIDTH/TILE_SIZE;
 		START_HEIGHT = (WINDOW_HEIGHT - BOARD_SIZE)/2 - WINDOW_HEIGHT/TILE_SIZE;			
-
-		createNodes();
-		defineConnections();		
 	}
 
 		//Numbering for Nodes starts at 0 in top left outer square, goes clockwise, then inner square and repeat
 	    // Current 2D pixel location will be with respect to the upper left of the window.
 	    // Only applies for typical Six Men's Morris setup.
 		//Coordinates stored in array {x,y,z} x(row)={0,1,2}, y(column)={0,1,2}, z(inner/outer)={0,1}
-	private static void createNodes() {
+	// Called once by BoardLayout's static initializer, so the layout is complete whichever class is loaded first
+	static void createNodes() {
 		
 		// Top row: Evenly distributes space for the three nodes along the top of the board. 
 		//          Node 0 is along the left of the board, node 2 is on the right, and node 1 is halfway between the two.
@@ -78,14 +76,10 @@ public class NodeCreator {
 	 * Defines all the connections of the nodes on the board
 	 */
 	static void defineConnections() {		
+		// Each node is joined to the next one clockwise around its own square
 		for (int x = 0; x < 8; x++){			
-			if (x == 7) {
-				BoardLayout.addConnection(x, 0);
-				BoardLayout.addConnection(x+8, x);
-			} else {
-				BoardLayout.addConnection(x, x+1);
-				BoardLayout.addConnection(x+7, x+8);
-			}
+			BoardLayout.addConnection(x, (x+1) % 8);
+			BoardLayout.addConnection(x+8, (x+1) % 8 + 8);
 		}
 		for (int x = 1; x <= 7; x+=2) BoardLayout.addConnection(x, x+8);
 	}
@@ -2,69 +2,56 @@ package model;
 
 /**
  * The class Piece encapsulates all the properties of a given Piece
+ * <br>
+ * Pieces are immutable flyweights: there is exactly one Piece per colour and node,
+ * obtained through get(), so looking up or moving a piece never creates objects.
+ * A piece that moves is represented by the Piece of its new node.
  *
  */
-public class Piece {
+public final class Piece {
+
+	private static final Piece[][] PIECES = new Piece[2][16];
+
+	static {
+		for (int node = 0; node < 16; node++){
+			PIECES[0][node] = new Piece(Board.RED, node);
+			PIECES[1][node] = new Piece(Board.BLUE, node);
+		}
+	}
 
 	private final boolean color;
-	private int[] coordinate = new int[3];
+	private final int node;
 	
-	// Constructors
-	public Piece(boolean color, int x, int y, int z){
-		this.color = color;
-		this.coordinate[0] = x;
-		this.coordinate[1] = y;
-		this.coordinate[2] = z;
-		this.coordinate = checkCoordinates(this.coordinate);
-	}
-	public Piece(boolean color, int[] x){
+	private Piece(boolean color, int node){
 		this.color = color;
-		this.coordinate = x;
-		this.coordinate = checkCoordinates(this.coordinate);
+		this.node = node;
 	}
-	public Piece(boolean color){
-		this.color = color;
-		this.coordinate[0] = 0;
-		this.coordinate[1] = 0;
-		this.coordinate[2] = 0;
-	}
-	public Piece(){
-		this.color = Board.RED;
-		this.coordinate[0] = 0;
-		this.coordinate[1] = 0;
-		this.coordinate[2] = 0;
+
+	/**
+	 * @param color true if 1st player (red) other false (blue)
+	 * @param node node the piece sits on (NodeCreator numbering)
+	 * @return the shared Piece for that colour and node
+	 */
+	public static Piece get(boolean color, int node){
+		return PIECES[color == Board.RED ? 0 : 1][node];
 	}
 	
 	public boolean getColor(){
 		return this.color;
 	}
-	public int[] getCoordinate(){
-		return this.coordinate;
-	}
-	
-	public void setCoordinate(int x, int y, int z){
-		this.coordinate[0] = x;
-		this.coordinate[1] = y;
-		this.coordinate[2] = z;
-		this.coordinate = checkCoordinates(this.coordinate);
-	}
-	public void setCoordinate(int[] x){
-		this.coordinate = x;
+
+	/**
+	 * @return node the piece sits on (NodeCreator numbering)
+	 */
+	public int getNode(){
+		return this.node;
 	}
-	
+
 	/**
-	 * In the case of an invalid coordinate array being passed
-	 * move to the closest valid position
-	 * @param coordinates to be tested
-	 * @return valid coordinates from the original
+	 * @return copy of the piece's position {x,y,z}: x row {0=bottom,1=middle,2=top},
+	 * y column {0=left,1=middle,2=right}, z frame {0=inner,1=outer}
 	 */
-	private int[] checkCoordinates(int[] coordinates){
-		if (coordinates[0] == 1 && coordinates[1] == 1){ coordinates[0] = 0; coordinates[1] = 0; }
-		for (int i = 0; i < 3; i++){
-			if (coordinates[i] > 2) coordinates[i] = 2;
-			if (coordinates[i] < 0) coordinates[i] = 0;
-		}
-		if (coordinates[2] > 1) coordinates[1] = 1;
-		return coordinates;
+	public int[] getCoordinate(){
+		return BoardLayout.getNodePosition(node);
 	}
 }
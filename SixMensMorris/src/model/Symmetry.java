@@ -0,0 +1,126 @@
+package model;
+
+/**
+ * The class Symmetry maps positions onto each other using the 16 symmetries of the
+ * board: the 8 rotations and reflections of the square, each with or without swapping
+ * the inner and outer squares.
+ * <br>
+ * Every position has a canonical representative, the smallest packed position (see
+ * Board.pack()) among its 16 images. Tables keyed on canonical positions need about a
+ * sixteenth of the entries. The transform that produced the representative is returned
+ * with it so that moves found for the representative can be mapped back.
+ * <br>
+ * Transform t rotates by (t % 4) quarter turns clockwise, then reflects left to right
+ * if bit 2 is set and swaps the squares if bit 3 is set. Transform 0 is the identity.
+ *
+ */
+public final class Symmetry {
+
+	public static final int COUNT = 16;
+
+	private static final int[][] NODE = new int[COUNT][16];	// Image of each node under each transform
+	private static final int[] INVERSE = new int[COUNT];
+
+	// Images of the low and high byte of a mask, so that a mask is mapped with two lookups
+	private static final int[][] LOW = new int[COUNT][256];
+	private static final int[][] HIGH = new int[COUNT][256];
+
+	static {
+		for (int t = 0; t < COUNT; t++){
+			for (int node = 0; node < 16; node++){
+				int ring = node / 8, p = node % 8;	// Place around the square, clockwise from the top left
+				p = (p + 2 * (t % 4)) % 8;
+				if ((t & 4) != 0) p = (10 - p) % 8;
+				if ((t & 8) != 0) ring = 1 - ring;
+				NODE[t][node] = ring * 8 + p;
+			}
+			for (int b = 0; b < 256; b++){
+				for (int node = 0; node < 8; node++){
+					if ((b & (1 << node)) == 0) continue;
+					LOW[t][b] |= 1 << NODE[t][node];
+					HIGH[t][b] |= 1 << NODE[t][node + 8];
+				}
+			}
+		}
+		for (int t = 0; t < COUNT; t++){
+			for (int u = 0; u < COUNT; u++){
+				if (NODE[u][NODE[t][0]] == 0 && NODE[u][NODE[t][1]] == 1 && NODE[u][NODE[t][8]] == 8) INVERSE[t] = u;
+			}
+		}
+	}
+
+	private Symmetry(){}
+
+	/**
+	 * @param node node index
+	 * @param t transform
+	 * @return image of the node
+	 */
+	public static int transformNode(int node, int t){
+		return NODE[t][node];
+	}
+
+	/**
+	 * @param mask occupancy mask
+	 * @param t transform
+	 * @return image of every node in the mask
+	 */
+	public static int transform(int mask, int t){
+		return LOW[t][mask & 0xFF] | HIGH[t][(mask >>> 8) & 0xFF];
+	}
+
+	/**
+	 * @param move packed move (see Move)
+	 * @param t transform
+	 * @return the same move played on the transformed board
+	 */
+	public static int transformMove(int move, int t){
+		int result = Move.isPlacement(move) ? Move.place(NODE[t][Move.getTo(move)])
+				: Move.slide(NODE[t][Move.getFrom(move)], NODE[t][Move.getTo(move)]);
+		if (Move.getCapture(move) != Move.NONE) result = Move.withCapture(result, NODE[t][Move.getCapture(move)]);
+		return result;
+	}
+
+	/**
+	 * @param t transform
+	 * @return transform that undoes t
+	 */
+	public static int inverse(int t){
+		return INVERSE[t];
+	}
+
+	/**
+	 * Finds the canonical representative of a position
+	 * @param red occupancy of red (or of the side to move)
+	 * @param blue occupancy of blue (or of the opponent)
+	 * @return canonical packed position in the low 32 bits and the transform leading to it above
+	 */
+	public static long canonical(int red, int blue){
+		long best = Long.MAX_VALUE;
+		int bestTransform = 0;
+		for (int t = 0; t < COUNT; t++){
+			long packed = Board.pack(transform(red, t), transform(blue, t)) & 0xFFFFFFFFL;
+			if (packed < best){
+				best = packed;
+				bestTransform = t;
+			}
+		}
+		return ((long) bestTransform << 32) | best;
+	}
+
+	/**
+	 * @param canonical value returned by canonical()
+	 * @return canonical packed position
+	 */
+	public static int getPosition(long canonical){
+		return (int) canonical;
+	}
+
+	/**
+	 * @param canonical value returned by canonical()
+	 * @return transform mapping the original position onto the canonical one
+	 */
+	public static int getTransform(long canonical){
+		return (int) (canonical >>> 32);
+	}
+}
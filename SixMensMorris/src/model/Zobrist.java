@@ -0,0 +1,75 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * The class Zobrist holds the random keys used to hash a position into a single long.
+ * <br>
+ * A position's key is the XOR of one key per piece (colour and node), one key per
+ * side for the number of pieces still in hand, and a key when blue is to move.
+ * Because XOR undoes itself, a Board can keep its key up to date in O(1) per change.
+ * The keys come from a fixed seed so that the same position hashes the same way in every run.
+ *
+ */
+public final class Zobrist {
+
+	private static final long SEED = 0x5EED6D4DL;
+	private static final int MAXPIECES = 6;
+
+	private static final long[][] PIECE = new long[2][16];
+	private static final long[][] HAND = new long[2][MAXPIECES + 1];
+	private static final long BLUE_TO_MOVE;
+
+	static {
+		Random random = new Random(SEED);
+		for (int c = 0; c < 2; c++){
+			for (int node = 0; node < 16; node++) PIECE[c][node] = random.nextLong();
+			for (int n = 0; n <= MAXPIECES; n++) HAND[c][n] = random.nextLong();
+		}
+		BLUE_TO_MOVE = random.nextLong();
+	}
+
+	private Zobrist(){}
+
+	/**
+	 * @param color colour of the piece
+	 * @param node node the piece sits on
+	 * @return key for that piece
+	 */
+	public static long piece(boolean color, int node){
+		return PIECE[color == Board.RED ? 0 : 1][node];
+	}
+
+	/**
+	 * @param color side holding the pieces
+	 * @param count number of pieces that side has yet to place
+	 * @return key for that number of pieces in hand
+	 */
+	public static long hand(boolean color, int count){
+		return HAND[color == Board.RED ? 0 : 1][count];
+	}
+
+	/**
+	 * @return key toggled whenever the turn passes
+	 */
+	public static long side(){
+		return BLUE_TO_MOVE;
+	}
+
+	/**
+	 * Computes the key of a position from scratch
+	 * @param red occupancy of red
+	 * @param blue occupancy of blue
+	 * @param redHand pieces red has yet to place
+	 * @param blueHand pieces blue has yet to place
+	 * @param turn side to move
+	 * @return key of the position
+	 */
+	public static long hash(int red, int blue, int redHand, int blueHand, boolean turn){
+		long key = hand(Board.RED, redHand) ^ hand(Board.BLUE, blueHand);
+		for (int mask = red; mask != 0; mask &= mask - 1) key ^= PIECE[0][Integer.numberOfTrailingZeros(mask)];
+		for (int mask = blue; mask != 0; mask &= mask - 1) key ^= PIECE[1][Integer.numberOfTrailingZeros(mask)];
+		if (turn == Board.BLUE) key ^= BLUE_TO_MOVE;
+		return key;
+	}
+}
@@ -0,0 +1,68 @@
+package view;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The class CommandQueue carries the commands the user gives through the UserInterface
+ * to whoever acts on them. Each command posted is handed to the Handler exactly once, in
+ * order, on the Swing event thread.
+ * <br>
+ * Commands posted in quick succession are handled in one batch, after which the handler
+ * is told the batch is done, so that it can repaint once for the whole batch.
+ *
+ */
+public class CommandQueue {
+
+	/**
+	 * Acts on the commands taken from the queue
+	 */
+	public interface Handler {
+
+		/**
+		 * @param command next command, called on the event thread
+		 */
+		void handle(UserInterface.Command command);
+
+		/**
+		 * Called on the event thread after each batch of commands has been handled
+		 */
+		void commandsDone();
+	}
+
+	private final ConcurrentLinkedQueue<UserInterface.Command> pending = new ConcurrentLinkedQueue<UserInterface.Command>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();	// True while a batch is waiting to run on the event thread
+	private final Handler handler;
+
+	private final Runnable drain = new Runnable(){
+		@Override
+		public void run() {
+			scheduled.set(false);	// Commands posted from now on start a new batch
+			UserInterface.Command command;
+			boolean handled = false;
+			while ((command = pending.poll()) != null) {
+				handler.handle(command);
+				handled = true;
+			}
+			if (handled) handler.commandsDone();	// An earlier batch may already have taken every command
+		}
+	};
+
+	/**
+	 * @param handler acts on every command posted
+	 */
+	public CommandQueue(Handler handler){
+		this.handler = handler;
+	}
+
+	/**
+	 * Queues a command to be handled on the event thread; may be called from any thread
+	 * @param command command given by the user
+	 */
+	public void post(UserInterface.Command command){
+		pending.add(command);
+		if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(drain);
+	}
+}
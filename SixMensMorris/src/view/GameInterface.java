@@ -4,14 +4,12 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Rectangle;
+import java.awt.GraphicsConfiguration;
 import java.awt.TexturePaint;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
 
-import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 
 
@@ -31,6 +29,11 @@ public class GameInterface extends JPanel {
 	final static int START_WIDTH;
 	final static int START_HEIGHT;	
 	final static int RADIUS;
+	final static int HIGHLIGHT_MARGIN = 6;                  // Half the width of a highlight outline, plus one pixel of slack
+
+	private static final BasicStroke NODE_STROKE = new BasicStroke(4.0f);
+	private static final BasicStroke LINE_STROKE = new BasicStroke(5.0f);
+	private static final BasicStroke HIGHLIGHT_STROKE = new BasicStroke(10.0f);
 
 	static {	
 		// Set default values for int variables relating to drawing window and board assets; in units of pixels.
@@ -49,23 +52,45 @@ public class GameInterface extends JPanel {
 
 	}	
 
+	private model.Board board;	// Game currently being displayed
+
+	// Textures are read once and kept ready for painting; image files must be specified (name and source directory)
+	private final TextureCache background = new TextureCache("resources/texture2.bmp", 75);
+	private final TextureCache boardTexture = new TextureCache("resources/texture3.bmp", TILE_SIZE);
+
+	// Everything that never changes during a game (background, board, stock pieces, nodes and lines), drawn once
+	private BufferedImage staticLayer;
+	private TexturePaint layerBackground;	// Textures the static layer was drawn with; it is redrawn if either is reloaded
+	private TexturePaint layerBoard;
+
+	// Paint-time counters, reported by main()
+	private long paintCount;
+	private long paintNanos;
+
 	/**
 	 * Instantiates the GameInterface
 	 */
 	public GameInterface(){		
 	}		
 
+	/**
+	 * @param board game to be displayed from now on
+	 */
+	public void setBoard(model.Board board){
+		this.board = board;
+	}
+
 	/* (non-Javadoc)
 	 * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
 	 * Wraps all drawing functions into one call.
 	 */
 	public void paintComponent(Graphics g) {
+		long start = System.nanoTime();
 		super.paintComponent(g);
-		drawBackground(g);
-		drawBoard(g);		
-		drawTemplate(g);
-		drawNodes(g);
+		g.drawImage(getStaticLayer(), 0, 0, null);
 		drawPieces(g);
+		paintNanos += System.nanoTime() - start;
+		paintCount++;
 	}
 
 	/**
@@ -75,44 +100,82 @@ public class GameInterface extends JPanel {
 		super.repaint();
 	}	
 
+	/**
+	 * Triggers redrawing of only the nodes whose contents have changed
+	 * @param nodes mask of the changed nodes (NodeCreator numbering)
+	 */
+	public void update(int nodes){
+		int half = RADIUS/2 + HIGHLIGHT_MARGIN;
+		for (; nodes != 0; nodes &= nodes - 1){
+			int node = Integer.numberOfTrailingZeros(nodes);
+			super.repaint(model.BoardLayout.getNodeX(node) - half, model.BoardLayout.getNodeY(node) - half, 2*half, 2*half);
+		}
+	}
+
+	/**
+	 * @return number of times the panel has been painted
+	 */
+	public long getPaintCount(){
+		return paintCount;
+	}
+
+	/**
+	 * @return total time spent painting the panel, in nanoseconds
+	 */
+	public long getPaintNanos(){
+		return paintNanos;
+	}
+
+	/**
+	 * @return image of the parts of the window that do not change during a game, drawn again only if a texture was reloaded
+	 */
+	private BufferedImage getStaticLayer(){
+		TexturePaint back = background.get();
+		TexturePaint front = boardTexture.get();
+		if (staticLayer != null && back == layerBackground && front == layerBoard) return staticLayer;
+
+		GraphicsConfiguration config = getGraphicsConfiguration();
+		if (config != null) staticLayer = config.createCompatibleImage(WINDOW_WIDTH, WINDOW_HEIGHT, Transparency.OPAQUE);
+		else staticLayer = new BufferedImage(WINDOW_WIDTH, WINDOW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		layerBackground = back;
+		layerBoard = front;
+
+		Graphics2D g = staticLayer.createGraphics();
+		g.setColor(getBackground());                                        // Shown where a texture is missing
+		g.fillRect(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT);
+		drawBackground(g, back);
+		drawBoard(g, front);
+		drawTemplate(g);
+		drawNodes(g);
+		g.dispose();
+		return staticLayer;
+	}
+
 	/**
 	 * Draws the background for the window
 	 * @param g java.awt.Graphics obejct
+	 * @param paint background texture, or null if the image file is missing
 	 */
-	private void drawBackground(Graphics g) {
+	private void drawBackground(Graphics g, TexturePaint paint) {
 		Graphics2D g2d = (Graphics2D) g;
 
-		BufferedImage backImage;
-
-		try {		
-			backImage = ImageIO.read(new File("resources/texture2.bmp"));   // Image file must be specified (name and source directory) to be shown as a background
-		} catch (IOException e) {                                           // If image is removed from the directory, an error should be thrown
-			System.out.println("Error: Image files missing from resource");
-			e.printStackTrace();
-			return;
-		}
+		if (paint == null) return;                                          // Nothing to show if the image file is missing
 
-		g2d.setPaint(new TexturePaint(backImage, new Rectangle(75,75)));    // Then with the desired image, draw the background
+		g2d.setPaint(paint);                                                // Then with the desired image, draw the background
 		g2d.fillRect(0,0,WINDOW_WIDTH,WINDOW_HEIGHT);
 	}
 
 	/**
 	 * Draws the game board on the screen
 	 * @param g java.awt.Graphics object
+	 * @param paint board texture, or null if the image file is missing
 	 */
-	private void drawBoard(Graphics g) {
+	private void drawBoard(Graphics g, TexturePaint paint) {
 		Graphics2D g2d = (Graphics2D) g;								
 
-		BufferedImage boardImage;
-		try {
-			boardImage = ImageIO.read(new File("resources/texture3.bmp"));  // Image file must be specified (name and source directory) to be shown as a playing board
-		} catch (IOException e) {                                           // If image is removed from the directory, an error should be thrown
-			System.out.println("Error: image file missing from resources");
-			e.printStackTrace();
-			return;
-		}
+		if (paint == null) return;                                          // Nothing to show if the image file is missing
 
-		g2d.setPaint(new TexturePaint(boardImage, new Rectangle(TILE_SIZE,TILE_SIZE)));
+		g2d.setPaint(paint);
 		g2d.fillRect(START_WIDTH, START_HEIGHT, BOARD_SIZE, BOARD_SIZE);    // Then with the desired image, draw the playing board image
 	}
 
@@ -162,7 +225,7 @@ public class GameInterface extends JPanel {
 	 */
 	private void drawOutlines(Graphics2D g){
 		g.setColor(Color.BLACK);
-		g.setStroke(new BasicStroke(4.0f));
+		g.setStroke(NODE_STROKE);
 		for (int i = 0; i < 16; i++){
 			g.drawOval(model.BoardLayout.getNodeX(i) - RADIUS/2, model.BoardLayout.getNodeY(i) - RADIUS/2, RADIUS, RADIUS);
 		}
@@ -175,7 +238,7 @@ public class GameInterface extends JPanel {
 	 */
 	private void drawOuterLines(Graphics2D g){
 		g.setColor(Color.BLACK);
-		g.setStroke(new BasicStroke(5.0f));
+		g.setStroke(LINE_STROKE);
 
 		for (int x = START_WIDTH; x < START_WIDTH + BOARD_SIZE; x+=BOARD_SIZE/2){
 			for (int y = START_HEIGHT; y < START_HEIGHT + BOARD_SIZE; y+=BOARD_SIZE){	
@@ -195,7 +258,7 @@ public class GameInterface extends JPanel {
 	 */
 	private void drawInnerLines(Graphics2D g){
 		g.setColor(Color.BLACK);
-		g.setStroke(new BasicStroke(5.0f));
+		g.setStroke(LINE_STROKE);
 
 		for (int x = START_WIDTH + BOARD_SIZE/4; x < START_WIDTH + 3*BOARD_SIZE/4; x += BOARD_SIZE/4){	
 			for (int y = START_HEIGHT + BOARD_SIZE/4; y <= START_HEIGHT + 3*BOARD_SIZE/4; y+= BOARD_SIZE/2){
@@ -215,7 +278,7 @@ public class GameInterface extends JPanel {
 	 */
 	private void drawJointLines(Graphics2D g){
 		g.setColor(Color.BLACK);
-		g.setStroke(new BasicStroke(5.0f));
+		g.setStroke(LINE_STROKE);
 
 		for (int x = START_WIDTH; x < START_WIDTH + BOARD_SIZE; x+= 3*BOARD_SIZE/4){
 			g.drawLine(x + RADIUS/2, START_HEIGHT + BOARD_SIZE/2, x + BOARD_SIZE/4 - RADIUS/2, START_HEIGHT + BOARD_SIZE/2);
@@ -230,40 +293,34 @@ public class GameInterface extends JPanel {
 	 * @param g java.awt.Graphics object
 	 */
 	private void drawPieces(Graphics g){
+		if (board == null) return;
 
 		//Draws all the pieces on the board
-		for (int x = 0; x < 3; x++){
-			for (int y = 0; y < 3; y++){
-				for (int z = 0; z < 2; z++){
-					int[] position = {x,y,z}; 
-					model.Piece current = model.Board.getPiece(position);				
-					if (current != null){						
-						drawPiece(g,x,y,z,current.getColor());						
-					}
-				}
+		for (int node = 0; node < 16; node++){
+			model.Piece current = board.getPiece(node);
+			if (current != null){
+				drawPiece(g, getRow(node), getColumn(node), getFrame(node), current.getColor());
 			}
 		}
 
-		//Checks for errors in the current state and highlights all pieces involved
-		ArrayList<model.BoardError> errors = model.BoardError.getErrors();
-		for (int num = 0; num < errors.size(); num++){
-			for (int x = 0; x < 3; x++){
-				for (int y = 0; y < 3; y++){
-					for (int z = 0; z < 2; z++){					
-						ArrayList<model.Piece> current = errors.get(num).getPieces();				
-						if (current != null){						
-							for (int i = 0; i < current.size(); i++){
-								int[] position = current.get(i).getCoordinate();
-								highlightPiece(g,position[0],position[1],position[2],current.get(i).getColor(), errors.get(num).getType());
-							}
-						}
-					}
-				}
-			}
+		//Highlights the pieces involved in the active error state, if any
+		model.BoardError error = board.getCurrentError();
+		if (error == null || error.getType() == 0) return;
+		for (int mask = error.getRedNodes(); mask != 0; mask &= mask - 1){
+			int node = Integer.numberOfTrailingZeros(mask);
+			highlightPiece(g, getRow(node), getColumn(node), getFrame(node), model.Board.RED, error.getType());
+		}
+		for (int mask = error.getBlueNodes(); mask != 0; mask &= mask - 1){
+			int node = Integer.numberOfTrailingZeros(mask);
+			highlightPiece(g, getRow(node), getColumn(node), getFrame(node), model.Board.BLUE, error.getType());
 		}
-
 	}
 
+	// Piece coordinates of a node, read from the layout's conversion table
+	private static int getRow(int node){ return model.BoardLayout.getNodeCoordinate(node, 0); }
+	private static int getColumn(int node){ return model.BoardLayout.getNodeCoordinate(node, 1); }
+	private static int getFrame(int node){ return model.BoardLayout.getNodeCoordinate(node, 2); }
+
 	/**
 	 * Draws a piece of the specified colour in the given location
 	 * @param g java.awt.Graphics object
@@ -323,7 +380,7 @@ public class GameInterface extends JPanel {
 			
 			g2d.fillOval(width - 15, height - 15, RADIUS/2, RADIUS/2);
 			g2d.setColor(Color.BLACK);
-			g2d.setStroke(new BasicStroke(10.0f));		
+			g2d.setStroke(HIGHLIGHT_STROKE);		
 			g2d.drawOval(width - RADIUS/2, height - RADIUS/2, RADIUS, RADIUS);
 
 		} else if (type == 2){
@@ -335,7 +392,7 @@ public class GameInterface extends JPanel {
 			g2d.fillOval(width - RADIUS/2, height - RADIUS/2, RADIUS, RADIUS);
 			
 			g2d.setColor(Color.YELLOW);
-			g2d.setStroke(new BasicStroke(10.0f));		
+			g2d.setStroke(HIGHLIGHT_STROKE);		
 			g2d.drawOval(width - RADIUS/2, height - RADIUS/2, RADIUS, RADIUS);
 		}
 
@@ -399,5 +456,31 @@ public class GameInterface extends JPanel {
 		case 2: return START_HEIGHT + BOARD_SIZE/4;
 		default: return -60;
 		}
-	}			
-}
\ No newline at end of file
+	}
+
+	/**
+	 * main() method to be used for measuring frame time: paints a game in progress
+	 * off screen and prints the paint counters
+	 * Usage: java view.GameInterface [frames]
+	 */
+	public static void main(String[] args) {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		model.Board board = new model.Board(model.Board.RED);
+		int[] nodes = {0, 1, 9, 4, 12, 6, 15, 10};
+		for (int i = 0; i < nodes.length; i++) board.addPiece(i % 2 == 0 ? model.Board.RED : model.Board.BLUE, model.BoardLayout.getNodePosition(nodes[i]));
+		board.validSetup();
+
+		GameInterface view = new GameInterface();
+		view.setBoard(board);
+		view.setSize(WINDOW_WIDTH, WINDOW_HEIGHT);
+		BufferedImage frame = new BufferedImage(WINDOW_WIDTH, WINDOW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics g = frame.createGraphics();
+		for (int i = 0; i < frames / 10; i++) view.paint(g);	// Warm up, and draw the static layer once
+		long count = view.getPaintCount(), nanos = view.getPaintNanos();
+		for (int i = 0; i < frames; i++) view.paint(g);
+		g.dispose();
+		count = view.getPaintCount() - count;
+		nanos = view.getPaintNanos() - nanos;
+		System.out.printf("%d frames, %.3f ms per frame%n", count, nanos / 1e6 / Math.max(1, count));
+	}
+}
@@ -0,0 +1,94 @@
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * The class TextureCache holds one texture ready for painting, so that the image file
+ * is read and decoded once instead of on every repaint.
+ * <br>
+ * The decoded image is scaled to one tile in the screen's native pixel format up front,
+ * so that Java2D can tile it without scaling or converting pixels on each paint. The file
+ * is looked at again at most once every CHECK_INTERVAL, and only read again if it has
+ * actually changed.
+ *
+ */
+final class TextureCache {
+
+	private static final long CHECK_INTERVAL = 1000000000L;	// Nanoseconds between checks of the file for changes
+
+	private final File file;
+	private final int tileSize;	// Width and height of one tile, in pixels
+
+	private TexturePaint paint;	// Null until the file has been read successfully
+	private long modified;	// Modification time and length of the file when it was read
+	private long length;
+	private long lastCheck;
+	private boolean checked;	// True once the file has been looked at, even if it could not be read
+	private boolean reported;	// True once a failure to read the file has been printed
+
+	/**
+	 * @param path location of the image file
+	 * @param tileSize width and height the image is scaled to in each tile, in pixels
+	 */
+	TextureCache(String path, int tileSize){
+		this.file = new File(path);
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * @return paint that tiles the texture, or null if the file could never be read
+	 */
+	TexturePaint get(){
+		long now = System.nanoTime();
+		if (!checked || now - lastCheck >= CHECK_INTERVAL){	// A missing file is also retried only once per interval
+			checked = true;
+			lastCheck = now;
+			if (paint == null || file.lastModified() != modified || file.length() != length) load();
+		}
+		return paint;	// If a reload fails the last good texture is kept
+	}
+
+	// Reads and converts the image file, remembering which version of it was read
+	private void load(){
+		long newModified = file.lastModified();
+		long newLength = file.length();
+		BufferedImage image;
+		try {
+			image = ImageIO.read(file);
+			if (image == null) throw new IOException("Unsupported image format: " + file);
+		} catch (IOException e) {	// If image is removed from the directory, an error should be shown, once
+			if (!reported){
+				System.out.println("Error: image file missing from resources: " + file);
+				e.printStackTrace();
+				reported = true;
+			}
+			return;
+		}
+		modified = newModified;
+		length = newLength;
+		reported = false;
+		paint = new TexturePaint(toCompatible(image), new Rectangle(tileSize, tileSize));
+	}
+
+	// Scales an image to one tile in the pixel format of the default screen
+	private BufferedImage toCompatible(BufferedImage image){
+		BufferedImage compatible;
+		if (GraphicsEnvironment.isHeadless()) compatible = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+		else compatible = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDefaultConfiguration().createCompatibleImage(tileSize, tileSize, Transparency.OPAQUE);
+		Graphics2D g = compatible.createGraphics();
+		g.drawImage(image, 0, 0, tileSize, tileSize, null);
+		g.dispose();
+		return compatible;
+	}
+}
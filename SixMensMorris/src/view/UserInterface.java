@@ -1,8 +1,8 @@
 package view;
 
 import java.awt.BorderLayout;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
@@ -11,30 +11,37 @@ import javax.swing.JPanel;
 /**
  * The class UserInterface is responsible for displaying actionable buttons that
  * the user can click in order to change the state of the game
+ * <br>
+ * Each button press is posted once to a CommandQueue as a typed Command
  *
  */
-public class UserInterface extends JPanel implements MouseListener {
+public class UserInterface extends JPanel {
 
-	public static enum Status {
-		NEW_GAME, PLACE_PIECE, CHECK_POSITION, SWITCH_COLOR, CONTINUE, PLAY_GAME
+	public static enum Command {
+		NEW_GAME, PLACE_PIECE, CHECK_POSITION, SWITCH_COLOR, COMPUTER, UNDO, REDO
 	}
 	
-	private Status state = Status.NEW_GAME;
-	
 	private final JButton new_game;
 	private final JButton place_pcs;
 	private final JButton check_pos;
 	private final JButton change_turn;
+	private final JButton computer;
+	private final JButton undo;
+	private final JButton redo;
 	
 	/**
 	 * Creates and displays buttons that the user can interact with
 	 * in order to change the state of the game
+	 * @param commands queue each button press is posted to
 	 */
-	public UserInterface(){
+	public UserInterface(CommandQueue commands){
 		new_game = new JButton("New Game");
 		place_pcs = new JButton();
 		check_pos = new JButton("Analyze");
 		change_turn = new JButton("Switch Color");
+		computer = new JButton("Computer: Off");
+		undo = new JButton("Undo");
+		redo = new JButton("Redo");
 		
 		JLabel label1 = new JLabel(" Place");
 		JLabel label2 = new JLabel("Pieces");
@@ -48,71 +55,37 @@ public class UserInterface extends JPanel implements MouseListener {
 		this.add(place_pcs, BorderLayout.LINE_START);
 		this.add(check_pos, BorderLayout.LINE_END);
 		this.add(change_turn, BorderLayout.CENTER);
-		new_game.addMouseListener(this);
-		place_pcs.addMouseListener(this);
-		check_pos.addMouseListener(this);
-		change_turn.addMouseListener(this);
+		JPanel bottom = new JPanel(new BorderLayout());
+		bottom.add(undo, BorderLayout.LINE_START);
+		bottom.add(computer, BorderLayout.CENTER);
+		bottom.add(redo, BorderLayout.LINE_END);
+		this.add(bottom, BorderLayout.PAGE_END);
+		post(new_game, Command.NEW_GAME, commands);
+		post(place_pcs, Command.PLACE_PIECE, commands);
+		post(check_pos, Command.CHECK_POSITION, commands);
+		post(change_turn, Command.SWITCH_COLOR, commands);
+		post(computer, Command.COMPUTER, commands);
+		post(undo, Command.UNDO, commands);
+		post(redo, Command.REDO, commands);
 	}
 
-	/**
-	 * @return current state of the game
-	 */
-	public Status getState() {
-		return state;
+	// Posts the command to the queue whenever the button is pressed
+	private static void post(JButton button, final Command command, final CommandQueue commands){
+		button.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				commands.post(command);
+			}
+		});
 	}
 
 
 	/**
-	 * @param state declare new state of the game
-	 */
-	public void setState(Status state) {
-		this.state = state;
-	}
-
-
-	/* (non-Javadoc)
-	 * Determines which button was clicked and responds accordingly
-	 * @see java.awt.event.MouseListener#mouseClicked(java.awt.event.MouseEvent)
+	 * @param color colour played by the computer, or null if it is not playing
 	 */
-	@Override
-	public void mouseClicked(MouseEvent e) {
-		if (e.getSource() == new_game) setState(Status.NEW_GAME);
-		else if (e.getSource() == place_pcs) setState(Status.PLACE_PIECE);		
-		else if (e.getSource() == check_pos) setState(Status.CHECK_POSITION);
-		else if (e.getSource() == change_turn) setState(Status.SWITCH_COLOR);
-		else setState(Status.CONTINUE);
-		
+	public void setComputerColor(Boolean color) {
+		if (color == null) computer.setText("Computer: Off");
+		else if (color == model.Board.RED) computer.setText("Computer: Red");
+		else computer.setText("Computer: Blue");
 	}
-
-	/* (non-Javadoc)
-	 * @see java.awt.event.MouseListener#mouseEntered(java.awt.event.MouseEvent)
-	 */
-	@Override
-	public void mouseEntered(MouseEvent e) {
-		e.consume();		
-	}
-
-	/* (non-Javadoc)
-	 * @see java.awt.event.MouseListener#mouseExited(java.awt.event.MouseEvent)
-	 */
-	@Override
-	public void mouseExited(MouseEvent e) {
-		e.consume();	
-	}
-
-	/* (non-Javadoc)
-	 * @see java.awt.event.MouseListener#mousePressed(java.awt.event.MouseEvent)
-	 */
-	@Override
-	public void mousePressed(MouseEvent e) {
-		e.consume();		
-	}
-
-	/* (non-Javadoc)
-	 * @see java.awt.event.MouseListener#mouseReleased(java.awt.event.MouseEvent)
-	 */
-	@Override
-	public void mouseReleased(MouseEvent e) {
-		e.consume();		
-	}	
-}
\ No newline at end of file
+}